@@ -0,0 +1,46 @@
+package com.nuti.traffic.grid;
+
+import com.nuti.traffic.model.Grid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GridLoaderBenchmark {
+
+    @Param({ "grids/ejemplo1.txt", "grids/big.txt", "grids/huge.txt", "grids/mega_602.txt" })
+    public String grid;
+
+    private final GridLoader loader = new GridLoader();
+    private Path source;
+    private Path compiled;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        source = Path.of(grid);
+        compiled = new GridCache(Files.createTempDirectory("grid-bench")).compile(source);
+    }
+
+    @Benchmark
+    public Grid loadText() {
+        return loader.load(source);
+    }
+
+    @Benchmark
+    public Grid loadCompiled() {
+        return loader.load(compiled);
+    }
+}
@@ -0,0 +1,71 @@
+package com.nuti.traffic.sim;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Times short whole runs and reports them per tick; the per-run setup (placement, lights) is included.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EngineTickBenchmark {
+
+    private static final int TICKS = 50;
+
+    @Param({ "grids/big.txt", "grids/huge.txt", "grids/mega_602.txt" })
+    public String grid;
+
+    @Param({ "0.1", "0.3", "0.6" })
+    public double density;
+
+    @Param({ "SEQUENTIAL", "PARALLEL", "SPATIAL", "FORKJOIN" })
+    public RunMode mode;
+
+    @Param({ "4" })
+    public int threads;
+
+    private SimulationSession session;
+    private SimulationConfig config;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        session = new SimulationSession(Path.of(grid));
+        int n = (int) (density * 2 * session.grid().nodeCount());
+        config = new SimulationConfig(Path.of(grid), n, TICKS, 42L, 0.2, 10, mode, threads, null, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        session.close();
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public SimulationResult tick() {
+        return switch (mode) {
+            case SEQUENTIAL -> new SequentialEngine().run(config, session);
+            case PARALLEL -> new ParallelEngine().run(config, session);
+            case SPATIAL -> new SpatialEngine().run(config, session);
+            case FORKJOIN -> new ForkJoinEngine().run(config, session);
+            case AUTO -> new AutoEngine(null).run(config, session);
+        };
+    }
+}
@@ -0,0 +1,135 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.grid.GridLoader;
+import com.nuti.traffic.model.Grid;
+import com.nuti.traffic.model.LightProgram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KernelBenchmark {
+
+    @Param({ "grids/ejemplo1.txt", "grids/big.txt", "grids/huge.txt", "grids/mega_602.txt" })
+    public String grid;
+
+    @Param({ "0.1", "0.3", "0.6" })
+    public double density;
+
+    Grid g;
+    SimulationConfig config;
+    LightProgram lights;
+    VehicleState vehicles;
+    long[] occ;
+    long[] occNext;
+    int n;
+
+    int[] propTargetNode;
+    int[] propTargetDir;
+    boolean[] propCanMove;
+
+    StampedWinners winners;
+    WinnerSlots slots;
+    int stamp;
+
+    MetricsCollector metrics;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        g = new GridLoader().load(Path.of(grid));
+        n = (int) (density * 2 * g.nodeCount());
+        config = new SimulationConfig(Path.of(grid), n, 1, 42L, 0.2, 10, RunMode.SEQUENTIAL, 1, null, false);
+
+        lights = LightProgram.uniform(g.intersectionCount(), 10);
+
+        vehicles = new VehicleState(n);
+        occ = PackedOccupancy.create(g.nodeCount());
+        occNext = PackedOccupancy.create(g.nodeCount());
+        new VehicleInitializer().initialize(g, 42L, n, vehicles, occ);
+
+        propTargetNode = new int[n];
+        propTargetDir = new int[n];
+        propCanMove = new boolean[n];
+        winners = new StampedWinners(g.nodeCount());
+        slots = new WinnerSlots(g.nodeCount());
+        metrics = new MetricsCollector(1);
+
+        SequentialEngine.computeProposals(g, lights, vehicles, occ, config, 0, propTargetNode, propTargetDir, propCanMove);
+    }
+
+    @Benchmark
+    public boolean[] proposals() {
+        SequentialEngine.computeProposals(g, lights, vehicles, occ, config, 0, propTargetNode, propTargetDir, propCanMove);
+        return propCanMove;
+    }
+
+    @Benchmark
+    public StampedWinners resolveSequential() {
+        winners.resolve(n, vehicles.idArray(), propTargetNode, propTargetDir, propCanMove, ++stamp);
+        return winners;
+    }
+
+    @Benchmark
+    public int resolveWinnerSlots() {
+        int s = ++stamp;
+        for (int i = 0; i < n; i++) {
+            if (propCanMove[i]) {
+                slots.propose(propTargetNode[i] * 4 + propTargetDir[i], vehicles.id(i), s);
+            }
+        }
+        int won = 0;
+        for (int i = 0; i < n; i++) {
+            if (propCanMove[i] && slots.wins(propTargetNode[i], propTargetDir[i], vehicles.id(i), s)) {
+                won++;
+            }
+        }
+        return won;
+    }
+
+    @Benchmark
+    public long[] applyMoves(ApplyState state) {
+        return SequentialEngine.applyMoves(g, vehicles, state.occ, state.occNext, n, propTargetNode, propTargetDir, propCanMove, state.winners, state.stamp, 0, metrics, null);
+    }
+
+    @State(Scope.Thread)
+    public static class ApplyState {
+        int[] nodes;
+        int[] dirs;
+        long[] occSnapshot;
+        long[] occ;
+        long[] occNext;
+        StampedWinners winners;
+        int stamp;
+
+        @Setup(Level.Trial)
+        public void snapshot(KernelBenchmark b) {
+            nodes = b.vehicles.nodeIdxArray().clone();
+            dirs = b.vehicles.dirIdxArray().clone();
+            occSnapshot = b.occ.clone();
+            occ = b.occ.clone();
+            occNext = b.occNext.clone();
+            winners = new StampedWinners(b.g.nodeCount());
+            stamp = 1;
+            winners.resolve(b.n, b.vehicles.idArray(), b.propTargetNode, b.propTargetDir, b.propCanMove, stamp);
+        }
+
+        @Setup(Level.Invocation)
+        public void restore(KernelBenchmark b) {
+            System.arraycopy(nodes, 0, b.vehicles.nodeIdxArray(), 0, nodes.length);
+            System.arraycopy(dirs, 0, b.vehicles.dirIdxArray(), 0, dirs.length);
+            System.arraycopy(occSnapshot, 0, occ, 0, occ.length);
+            PackedOccupancy.clearAll(occNext);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.nuti.traffic.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DeterministicRngBenchmark {
+
+    private static final int CALLS = 1024;
+
+    private long seed = 42L;
+    private int tick;
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public double unitDouble() {
+        int t = tick++;
+        double sum = 0.0;
+        for (int vehicleId = 0; vehicleId < CALLS; vehicleId++) {
+            sum += DeterministicRng.unitDouble(seed, vehicleId, t, 1L);
+        }
+        return sum;
+    }
+}
@@ -5,11 +5,19 @@ import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
 import com.nuti.traffic.bench.BenchmarkRunner;
+import com.nuti.traffic.bench.EnsembleRunner;
 import com.nuti.traffic.bench.SweepRunner;
+import com.nuti.traffic.grid.GridCache;
+import com.nuti.traffic.server.ServeCommand;
+import com.nuti.traffic.sim.AutoEngine;
+import com.nuti.traffic.sim.ForkJoinEngine;
 import com.nuti.traffic.sim.ParallelEngine;
+import com.nuti.traffic.sim.ResultCache;
 import com.nuti.traffic.sim.RunMode;
 import com.nuti.traffic.sim.SequentialEngine;
 import com.nuti.traffic.sim.SimulationConfig;
+import com.nuti.traffic.sim.SimulationEngine;
+import com.nuti.traffic.sim.SpatialEngine;
 
 import java.nio.file.Path;
 import java.util.Arrays;
@@ -17,11 +25,12 @@ import java.util.Arrays;
 @Command(
         name = "traffic-abm",
         mixinStandardHelpOptions = true,
-        description = "Simulacion ABM de trafico urbano (secuencial y paralela)."
+        description = "Simulacion ABM de trafico urbano (secuencial y paralela).",
+        subcommands = ServeCommand.class
 )
 public class Main implements Runnable {
 
-    @Option(names = "--grid", required = true, description = "Ruta del archivo de rejilla (.txt)")
+    @Option(names = "--grid", description = "Ruta del archivo de rejilla (.txt)")
     private Path grid;
 
     @Option(names = "--vehicles", description = "Numero de vehiculos (N)")
@@ -30,8 +39,14 @@ public class Main implements Runnable {
     @Option(names = "--ticks", description = "Numero de ticks (T)")
     private Integer ticks;
 
-    @Option(names = "--seed", required = true, description = "Semilla determinista")
-    private long seed;
+    @Option(names = "--seed", description = "Semilla determinista")
+    private Long seed;
+
+    @Option(names = "--seeds", description = "Ensamble: lista o rangos de semillas (p. ej. 1..500 o 1,5,9); carga la rejilla una vez y corre una simulacion secuencial por semilla en paralelo")
+    private String seeds;
+
+    @Option(names = "--batch", defaultValue = "1", description = "Ensamble: semillas que avanza cada hilo en lockstep sobre una sola pasada por la rejilla (1 = una simulacion por semilla)")
+    private int batch;
 
     @Option(names = "--turnProb", defaultValue = "0.2", description = "Probabilidad de giro en interseccion [0..1]")
     private double turnProb;
@@ -48,18 +63,57 @@ public class Main implements Runnable {
     @Option(names = "--reps", defaultValue = "3", description = "Repeticiones por configuracion en benchmark")
     private int repetitions;
 
-    @Option(names = "--mode", defaultValue = "seq", description = "Modo de ejecucion: seq|par")
+    @Option(names = "--mode", defaultValue = "seq", description = "Modo de ejecucion: seq|par|spatial|fj|auto")
     private String mode;
 
-    @Option(names = "--threads", defaultValue = "1", description = "Numero de hilos (mode=par) o lista separada por comas (benchmark)")
+    @Option(names = "--threads", description = "Numero de hilos (mode=par, por defecto 1), lista separada por comas (benchmark) o semillas simultaneas (--seeds, por defecto todos los nucleos)")
     private String threads;
 
+    @Option(names = "--sweepCores", defaultValue = "1", description = "Sweep: nucleos a repartir entre puntos concurrentes (P=1/P=2 comparten la maquina, un punto con P >= nucleos corre solo); 1 = un punto a la vez")
+    private int sweepCores;
+
     @Option(names = "--nList", defaultValue = "", description = "Lista separada por comas de valores de N (solo sweep). Si vacio usa --vehicles")
     private String nList;
 
     @Option(names = "--ticksList", defaultValue = "", description = "Lista separada por comas de valores de ticks (solo sweep). Si vacio usa --ticks")
     private String ticksList;
 
+    @Option(names = "--gridCache", description = "Directorio de rejillas compiladas (.tgrid). Si se indica, la rejilla se compila una vez por contenido y luego se carga via mmap sin revalidar")
+    private Path gridCache;
+
+    @Option(names = "--reorderEvery", defaultValue = "0", description = "Reordena los vehiculos en memoria por posicion (fila-mayor) cada K ticks; 0 desactiva (solo modos seq|par|fj)")
+    private int reorderEvery;
+
+    @Option(names = "--sleep", defaultValue = "false", description = "Solo modo seq: los vehiculos bloqueados duermen hasta que se libere su destino o cambie su semaforo")
+    private boolean sleep;
+
+    @Option(names = "--lights", description = "Archivo de planes de semaforos (planes por fases, offsets por interseccion, onda verde). Si no se indica, todos alternan H/V cada --period ticks")
+    private Path lights;
+
+    @Option(names = "--streamTicks", defaultValue = "false", description = "Escribe el CSV de ticks durante la corrida desde un hilo en segundo plano (gzip si --out termina en .gz), sin guardar la serie en memoria")
+    private boolean streamTicks;
+
+    @Option(names = "--trajectories", description = "Archivo .traj donde se registran solo los cambios de posicion de cada vehiculo (tick, id, direccion), escrito en segundo plano; se exporta con TrajectoryCsvExport")
+    private Path trajectories;
+
+    @Option(names = "--checkpoint", description = "Archivo de checkpoint binario (estado de vehiculos + metricas) para --checkpointEvery y --resume")
+    private Path checkpoint;
+
+    @Option(names = "--checkpointEvery", defaultValue = "0", description = "Guarda un checkpoint cada K ticks, escrito en segundo plano desde una copia del estado; 0 desactiva")
+    private int checkpointEvery;
+
+    @Option(names = "--resume", defaultValue = "false", description = "Continua desde --checkpoint si existe (si no, empieza en el tick 0); el resultado es identico al de una corrida sin interrupcion")
+    private boolean resume;
+
+    @Option(names = "--autoCache", defaultValue = "data/auto_mode.properties", description = "Archivo donde mode=auto guarda la decision (motor e hilos) por rejilla, rango de N y nucleos")
+    private Path autoCache;
+
+    @Option(names = "--resultCache", description = "Directorio de resultados memorizados por (contenido de la rejilla, N, ticks, seed, turnProb, semaforos): una corrida repetida no se simula; benchmark y sweep siempre miden y solo registran o verifican")
+    private Path resultCache;
+
+    @Option(names = "--resultCacheMB", defaultValue = "512", description = "Tamano maximo de --resultCache en MiB; se eliminan primero las entradas usadas hace mas tiempo")
+    private long resultCacheMB;
+
     @Option(names = "--out", description = "Ruta de salida: ticks CSV (runs) o summary CSV (benchmark)")
     private Path out;
 
@@ -67,10 +121,23 @@ public class Main implements Runnable {
     public void run() {
         validateArgs();
 
+        if (gridCache != null) {
+            grid = new GridCache(gridCache).compile(grid);
+        }
+
+        ResultCache cache = (resultCache != null) ? new ResultCache(resultCache, resultCacheMB * 1024L * 1024L) : null;
+
+        if (seeds != null) {
+            int workers = (threads != null) ? parseThreadsInt(threads) : Runtime.getRuntime().availableProcessors();
+            Path outEnsemble = (out != null) ? out : Path.of("data", "ensemble.csv");
+            new EnsembleRunner().runEnsemble(grid, EnsembleRunner.parseSeeds(seeds), vehicles, ticks, turnProb, lightPeriod, lights, workers, batch, outEnsemble);
+            return;
+        }
+
         if (benchmark) {
             int[] threadList = parseThreadsList(threads);
             Path outSummary = (out != null) ? out : Path.of("data", "summary.csv");
-            new BenchmarkRunner().runBenchmark(grid, vehicles, ticks, seed, turnProb, lightPeriod, repetitions, threadList, outSummary);
+            new BenchmarkRunner(cache).runBenchmark(grid, vehicles, ticks, seed, turnProb, lightPeriod, repetitions, threadList, outSummary);
             return;
         }
 
@@ -79,37 +146,64 @@ public class Main implements Runnable {
             int[] nVals = (nList != null && !nList.isBlank()) ? parseIntList("--nList", nList) : new int[] { vehicles };
             int[] tickVals = (ticksList != null && !ticksList.isBlank()) ? parseIntList("--ticksList", ticksList) : new int[] { ticks };
             Path outSweep = (out != null) ? out : Path.of("data", "sweep.csv");
-            new SweepRunner().runSweep(grid, nVals, tickVals, seed, turnProb, lightPeriod, repetitions, threadList, outSweep);
+            new SweepRunner(cache).runSweep(grid, nVals, tickVals, seed, turnProb, lightPeriod, repetitions, threadList, sweepCores, outSweep);
             return;
         }
 
-        RunMode runMode = parseMode(mode);
+        RunMode runMode = RunMode.parse(mode);
         int threadsInt = parseThreadsInt(threads);
-        SimulationConfig config = new SimulationConfig(
-                grid,
-                vehicles,
-                ticks,
-                seed,
-                turnProb,
-                lightPeriod,
-                runMode,
-                threadsInt,
-                out
-        );
-
-        if (runMode == RunMode.SEQUENTIAL) {
-            new SequentialEngine().run(config);
-            return;
+        SimulationConfig config = new SimulationConfig(grid, vehicles, ticks, seed, turnProb, lightPeriod, runMode, threadsInt, out, true)
+                .withReorderInterval(reorderEvery)
+                .withSleepBlocked(sleep)
+                .withLightsFile(lights)
+                .withStreamTicks(streamTicks)
+                .withTrajectoryFile(trajectories)
+                .withCheckpoint(checkpoint, checkpointEvery)
+                .withResume(resume);
+
+        SimulationEngine engine = switch (runMode) {
+            case SEQUENTIAL -> new SequentialEngine();
+            case PARALLEL -> new ParallelEngine();
+            case SPATIAL -> new SpatialEngine();
+            case FORKJOIN -> new ForkJoinEngine();
+            case AUTO -> new AutoEngine(autoCache);
+        };
+        if (cache != null) {
+            cache.run(engine, config);
+        } else {
+            engine.run(config);
         }
-
-        new ParallelEngine().run(config);
     }
 
     private void validateArgs() {
+        if (grid == null) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--grid is required");
+        }
         if (benchmark && sweep) {
             throw new CommandLine.ParameterException(new CommandLine(this), "--benchmark and --sweep cannot be used together");
         }
 
+        if (seeds != null && (benchmark || sweep)) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--seeds cannot be used with --benchmark or --sweep");
+        }
+        if (seeds != null && (RunMode.parse(mode) != RunMode.SEQUENTIAL || reorderEvery != 0 || sleep || streamTicks
+                || trajectories != null || checkpoint != null || checkpointEvery != 0 || resume || resultCache != null)) {
+            throw new CommandLine.ParameterException(new CommandLine(this),
+                    "--seeds runs sequential ensembles and does not support --mode, --reorderEvery, --sleep, --streamTicks, --trajectories, --checkpoint, --checkpointEvery, --resume or --resultCache");
+        }
+        if (sweepCores <= 0) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--sweepCores must be > 0");
+        }
+        if (batch <= 0) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--batch must be > 0");
+        }
+        if (batch > 1 && seeds == null) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--batch requires --seeds");
+        }
+        if (seeds == null && seed == null) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--seed is required (or --seeds for an ensemble)");
+        }
+
         if (benchmark) {
             if (vehicles == null) {
                 throw new CommandLine.ParameterException(new CommandLine(this), "--vehicles is required when using --benchmark");
@@ -145,23 +239,34 @@ public class Main implements Runnable {
         if (lightPeriod <= 0) {
             throw new CommandLine.ParameterException(new CommandLine(this), "--period must be > 0");
         }
+        if (reorderEvery < 0) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--reorderEvery must be >= 0");
+        }
+        RunMode runMode = RunMode.parse(mode);
+        if (reorderEvery > 0 && (runMode == RunMode.SPATIAL || runMode == RunMode.AUTO)) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--reorderEvery is only supported with --mode seq|par|fj");
+        }
+        if (sleep && runMode != RunMode.SEQUENTIAL) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--sleep is only supported with --mode seq");
+        }
+        if (checkpointEvery < 0) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--checkpointEvery must be >= 0");
+        }
+        if ((checkpointEvery > 0 || resume) && checkpoint == null) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--checkpoint is required with --checkpointEvery or --resume");
+        }
+        if (resultCacheMB <= 0) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--resultCacheMB must be > 0");
+        }
         if (repetitions <= 0) {
             throw new CommandLine.ParameterException(new CommandLine(this), "--reps must be > 0");
         }
     }
 
-    private static RunMode parseMode(String mode) {
-        if (mode == null) {
-            return RunMode.SEQUENTIAL;
-        }
-        return switch (mode.toLowerCase()) {
-            case "seq" -> RunMode.SEQUENTIAL;
-            case "par" -> RunMode.PARALLEL;
-            default -> throw new IllegalArgumentException("Invalid --mode: " + mode + " (expected seq|par)");
-        };
-    }
-
     private static int parseThreadsInt(String threads) {
+        if (threads == null) {
+            return 1;
+        }
         try {
             int p = Integer.parseInt(threads.trim());
             if (p <= 0) {
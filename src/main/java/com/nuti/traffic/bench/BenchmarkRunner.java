@@ -1,10 +1,14 @@
 package com.nuti.traffic.bench;
 
+import com.nuti.traffic.io.ColumnarFormat;
+import com.nuti.traffic.io.ColumnarWriter;
 import com.nuti.traffic.sim.ParallelEngine;
+import com.nuti.traffic.sim.ResultCache;
 import com.nuti.traffic.sim.RunMode;
 import com.nuti.traffic.sim.SequentialEngine;
 import com.nuti.traffic.sim.SimulationConfig;
 import com.nuti.traffic.sim.SimulationResult;
+import com.nuti.traffic.sim.SimulationSession;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -17,6 +21,17 @@ public final class BenchmarkRunner {
 
     private final SequentialEngine sequential = new SequentialEngine();
     private final ParallelEngine parallel = new ParallelEngine();
+    private final ResultCache cache;
+
+    public BenchmarkRunner() {
+        this(null);
+    }
+
+    // With a result cache, the first repetition of each point is recorded in it (or checked against it); every
+    // repetition still runs, since the timings are the point of the measurement.
+    public BenchmarkRunner(ResultCache cache) {
+        this.cache = cache;
+    }
 
     public void runBenchmark(
             Path grid,
@@ -36,40 +51,61 @@ public final class BenchmarkRunner {
             throw new IllegalArgumentException("threadList must be non-empty");
         }
 
+        List<Row> rows = new ArrayList<>();
+        try (SimulationSession session = new SimulationSession(grid)) {
+            runBenchmark(session, grid, vehicles, ticks, seed, turnProb, lightPeriod, repetitions, threadList, rows);
+        }
+
+        if (ColumnarFormat.isColumnar(outSummaryCsv)) {
+            writeColumnar(outSummaryCsv, rows);
+        } else {
+            writeSummary(outSummaryCsv, rows);
+        }
+    }
+
+    private void runBenchmark(
+            SimulationSession session,
+            Path grid,
+            int vehicles,
+            int ticks,
+            long seed,
+            double turnProb,
+            int lightPeriod,
+            int repetitions,
+            int[] threadList,
+            List<Row> rows
+    ) {
         SimulationConfig warmupSeq = new SimulationConfig(grid, vehicles, ticks, seed, turnProb, lightPeriod, RunMode.SEQUENTIAL, 1, null, false);
-        sequential.run(warmupSeq);
+        sequential.run(warmupSeq, session);
         for (int p : threadList) {
             SimulationConfig warmupPar = new SimulationConfig(grid, vehicles, ticks, seed, turnProb, lightPeriod, RunMode.PARALLEL, p, null, false);
-            parallel.run(warmupPar);
+            parallel.run(warmupPar, session);
         }
 
-        Stats seqStats = measureSequential(grid, vehicles, ticks, seed, turnProb, lightPeriod, repetitions);
-        List<Row> rows = new ArrayList<>();
+        Stats seqStats = measureSequential(session, grid, vehicles, ticks, seed, turnProb, lightPeriod, repetitions);
 
         rows.add(new Row("SEQUENTIAL", vehicles, ticks, 1, seqStats.meanTimeMs, seqStats.stdTimeMs, seqStats.meanFlow, seqStats.meanStopped, 1.0, 1.0));
 
         System.out.println("BENCHMARK SEQUENTIAL reps=" + repetitions + " mean_time_ms=" + seqStats.meanTimeMs + " std_time_ms=" + seqStats.stdTimeMs);
 
         for (int p : threadList) {
-            Stats parStats = measureParallel(grid, vehicles, ticks, seed, turnProb, lightPeriod, repetitions, p);
+            Stats parStats = measureParallel(session, grid, vehicles, ticks, seed, turnProb, lightPeriod, repetitions, p);
             double speedup = seqStats.meanTimeMs / parStats.meanTimeMs;
             double efficiency = speedup / p;
             rows.add(new Row("PARALLEL", vehicles, ticks, p, parStats.meanTimeMs, parStats.stdTimeMs, parStats.meanFlow, parStats.meanStopped, speedup, efficiency));
 
             System.out.println("BENCHMARK PARALLEL P=" + p + " reps=" + repetitions + " mean_time_ms=" + parStats.meanTimeMs + " std_time_ms=" + parStats.stdTimeMs + " speedup=" + speedup + " efficiency=" + efficiency);
         }
-
-        writeSummary(outSummaryCsv, rows);
     }
 
-    private Stats measureSequential(Path grid, int vehicles, int ticks, long seed, double turnProb, int lightPeriod, int repetitions) {
+    private Stats measureSequential(SimulationSession session, Path grid, int vehicles, int ticks, long seed, double turnProb, int lightPeriod, int repetitions) {
         long[] times = new long[repetitions];
         double[] flows = new double[repetitions];
         double[] stoppeds = new double[repetitions];
 
         for (int r = 0; r < repetitions; r++) {
             SimulationConfig cfg = new SimulationConfig(grid, vehicles, ticks, seed, turnProb, lightPeriod, RunMode.SEQUENTIAL, 1, null, false);
-            SimulationResult res = sequential.run(cfg);
+            SimulationResult res = (cache != null && r == 0) ? cache.runTimed(sequential, cfg, session) : sequential.run(cfg, session);
             times[r] = res.timeMs();
             flows[r] = res.avgFlow();
             stoppeds[r] = res.avgStopped();
@@ -78,14 +114,14 @@ public final class BenchmarkRunner {
         return Stats.from(times, flows, stoppeds);
     }
 
-    private Stats measureParallel(Path grid, int vehicles, int ticks, long seed, double turnProb, int lightPeriod, int repetitions, int threads) {
+    private Stats measureParallel(SimulationSession session, Path grid, int vehicles, int ticks, long seed, double turnProb, int lightPeriod, int repetitions, int threads) {
         long[] times = new long[repetitions];
         double[] flows = new double[repetitions];
         double[] stoppeds = new double[repetitions];
 
         for (int r = 0; r < repetitions; r++) {
             SimulationConfig cfg = new SimulationConfig(grid, vehicles, ticks, seed, turnProb, lightPeriod, RunMode.PARALLEL, threads, null, false);
-            SimulationResult res = parallel.run(cfg);
+            SimulationResult res = (cache != null && r == 0) ? cache.runTimed(parallel, cfg, session) : parallel.run(cfg, session);
             times[r] = res.timeMs();
             flows[r] = res.avgFlow();
             stoppeds[r] = res.avgStopped();
@@ -131,6 +167,37 @@ public final class BenchmarkRunner {
         }
     }
 
+    private void writeColumnar(Path out, List<Row> rows) {
+        List<ColumnarFormat.Column> schema = List.of(
+                new ColumnarFormat.Column("mode", ColumnarFormat.Type.STRING),
+                new ColumnarFormat.Column("N", ColumnarFormat.Type.INT32),
+                new ColumnarFormat.Column("ticks", ColumnarFormat.Type.INT32),
+                new ColumnarFormat.Column("threads", ColumnarFormat.Type.INT32),
+                new ColumnarFormat.Column("time_ms", ColumnarFormat.Type.FLOAT64),
+                new ColumnarFormat.Column("std_time_ms", ColumnarFormat.Type.FLOAT64),
+                new ColumnarFormat.Column("avg_flow", ColumnarFormat.Type.FLOAT64),
+                new ColumnarFormat.Column("avg_stopped", ColumnarFormat.Type.FLOAT64),
+                new ColumnarFormat.Column("speedup", ColumnarFormat.Type.FLOAT64),
+                new ColumnarFormat.Column("efficiency", ColumnarFormat.Type.FLOAT64)
+        );
+        try (ColumnarWriter w = new ColumnarWriter(out, rows.size(), schema)) {
+            for (int r = 0; r < rows.size(); r++) {
+                Row row = rows.get(r);
+                w.putString(0, r, row.mode);
+                w.putInt(1, r, row.n);
+                w.putInt(2, r, row.ticks);
+                w.putInt(3, r, row.threads);
+                w.putDouble(4, r, row.timeMs);
+                w.putDouble(5, r, row.stdTimeMs);
+                w.putDouble(6, r, row.avgFlow);
+                w.putDouble(7, r, row.avgStopped);
+                w.putDouble(8, r, row.speedup);
+                w.putDouble(9, r, row.efficiency);
+            }
+            w.finish();
+        }
+    }
+
     private record Row(
             String mode,
             int n,
@@ -0,0 +1,125 @@
+package com.nuti.traffic.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs independent tasks concurrently on disjoint shares of a core budget. A task asking for more cores than the budget
+// holds the whole budget, so it runs alone. Tasks start first-fit in submission order as cores free up, and each one
+// records the most cores other tasks held at any point while it ran (0 = it had the machine to itself).
+final class CoreScheduler {
+
+    record Outcome<T>(T value, int sharedCores) {
+    }
+
+    private final int budget;
+
+    private int inUse;
+    private int[] cost;
+    private boolean[] active;
+    private int[] shared;
+    private Throwable failure;
+
+    CoreScheduler(int budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("core budget must be > 0");
+        }
+        this.budget = budget;
+    }
+
+    <T> List<Outcome<T>> runAll(int[] cores, List<Callable<T>> tasks) {
+        int count = tasks.size();
+        if (cores.length != count) {
+            throw new IllegalArgumentException("cores and tasks must have the same length");
+        }
+        List<T> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(null);
+        }
+        boolean[] started = new boolean[count];
+
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService pool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "traffic-sweep-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            synchronized (this) {
+                cost = new int[count];
+                active = new boolean[count];
+                shared = new int[count];
+                failure = null;
+                for (int i = 0; i < count; i++) {
+                    cost[i] = Math.min(Math.max(1, cores[i]), budget);
+                }
+
+                int pending = count;
+                while (true) {
+                    for (int i = 0; i < count && failure == null; i++) {
+                        if (started[i] || inUse + cost[i] > budget) {
+                            continue;
+                        }
+                        started[i] = true;
+                        pending--;
+                        start(i);
+                        int task = i;
+                        pool.execute(() -> {
+                            try {
+                                values.set(task, tasks.get(task).call());
+                                finish(task, null);
+                            } catch (Throwable e) {
+                                finish(task, e);
+                            }
+                        });
+                    }
+                    // After a failure nothing new starts; the running tasks are left to finish.
+                    if (inUse == 0 && (pending == 0 || failure != null)) {
+                        break;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while running sweep points", e);
+                    }
+                }
+                if (failure != null) {
+                    throw new RuntimeException("Sweep point failed", failure);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        List<Outcome<T>> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            out.add(new Outcome<>(values.get(i), shared[i]));
+        }
+        return out;
+    }
+
+    // Cores in use only grow when a task starts, so checking every running task here catches each one's peak.
+    private void start(int task) {
+        shared[task] = inUse;
+        inUse += cost[task];
+        active[task] = true;
+        for (int i = 0; i < active.length; i++) {
+            if (active[i] && i != task) {
+                shared[i] = Math.max(shared[i], inUse - cost[i]);
+            }
+        }
+    }
+
+    private synchronized void finish(int task, Throwable error) {
+        active[task] = false;
+        inUse -= cost[task];
+        if (error != null && failure == null) {
+            failure = error;
+        }
+        notifyAll();
+    }
+}
@@ -0,0 +1,311 @@
+package com.nuti.traffic.bench;
+
+import com.nuti.traffic.grid.GridLoader;
+import com.nuti.traffic.io.ColumnarFormat;
+import com.nuti.traffic.io.ColumnarWriter;
+import com.nuti.traffic.model.Grid;
+import com.nuti.traffic.sim.ReplicaBatchEngine;
+import com.nuti.traffic.sim.RunMode;
+import com.nuti.traffic.sim.SequentialEngine;
+import com.nuti.traffic.sim.SimulationConfig;
+import com.nuti.traffic.sim.SimulationResult;
+import com.nuti.traffic.sim.SimulationSession;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// One sequential run per seed, seeds spread over workers. The Grid is loaded once and shared read-only; each worker
+// owns a SimulationSession (occupancy, vehicles, winner tables) that it reuses for every seed it takes. With batch > 1 a
+// worker takes that many seeds at once and advances them in lockstep through ReplicaBatchEngine. Sessions are quiet:
+// instead of each engine's START/END lines, one SEED line is printed as each seed completes.
+public final class EnsembleRunner {
+
+    private static final String HEADER = "seed,N,ticks,time_ms,avg_flow,avg_stopped";
+
+    public record Summary(int seeds, int workers, long wallMs, double meanFlow, double stdFlow, double meanStopped, double stdStopped) {
+    }
+
+    public Summary runEnsemble(
+            Path gridPath,
+            long[] seeds,
+            int vehicles,
+            int ticks,
+            double turnProb,
+            int lightPeriod,
+            Path lightsFile,
+            int workers,
+            Path out
+    ) {
+        return runEnsemble(gridPath, seeds, vehicles, ticks, turnProb, lightPeriod, lightsFile, workers, 1, out);
+    }
+
+    public Summary runEnsemble(
+            Path gridPath,
+            long[] seeds,
+            int vehicles,
+            int ticks,
+            double turnProb,
+            int lightPeriod,
+            Path lightsFile,
+            int workers,
+            int batch,
+            Path out
+    ) {
+        if (seeds.length == 0) {
+            throw new IllegalArgumentException("seeds must be non-empty");
+        }
+        if (workers <= 0) {
+            throw new IllegalArgumentException("workers must be > 0");
+        }
+        if (batch <= 0) {
+            throw new IllegalArgumentException("batch must be > 0");
+        }
+        int workerCount = Math.min(workers, (seeds.length + batch - 1) / batch);
+
+        Grid grid = new GridLoader().load(gridPath);
+
+        Instant start = Instant.now();
+        long startNs = System.nanoTime();
+        System.out.println("[" + start + "] START ENSEMBLE grid=" + gridPath + " N=" + vehicles + " ticks=" + ticks + " seeds=" + seeds.length + " workers=" + workerCount + " batch=" + batch);
+
+        double[] flows = new double[seeds.length];
+        double[] stoppeds = new double[seeds.length];
+        AtomicInteger nextSeed = new AtomicInteger();
+        AtomicInteger doneSeeds = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread t = new Thread(r, "traffic-ensemble-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try (ResultSink sink = ResultSink.open(out, seeds.length)) {
+            List<Future<?>> pending = new ArrayList<>();
+            for (int w = 0; w < workerCount; w++) {
+                pending.add(pool.submit(() -> {
+                    SequentialEngine engine = new SequentialEngine();
+                    ReplicaBatchEngine batchEngine = new ReplicaBatchEngine();
+                    try (SimulationSession session = new SimulationSession(gridPath, grid)) {
+                        session.setQuiet(true);
+                        // A failed worker stops the others from taking new seeds; runs already in progress finish.
+                        for (int i = nextSeed.getAndAdd(batch); i < seeds.length && !failed.get(); i = nextSeed.getAndAdd(batch)) {
+                            SimulationConfig cfg = new SimulationConfig(gridPath, vehicles, ticks, seeds[i], turnProb, lightPeriod, RunMode.SEQUENTIAL, 1, null, false)
+                                    .withLightsFile(lightsFile);
+                            long[] taken = Arrays.copyOfRange(seeds, i, Math.min(i + batch, seeds.length));
+                            SimulationResult[] res = (taken.length == 1)
+                                    ? new SimulationResult[] { engine.run(cfg, session) }
+                                    : batchEngine.run(cfg, taken, session);
+                            for (int r = 0; r < res.length; r++) {
+                                flows[i + r] = res[r].avgFlow();
+                                stoppeds[i + r] = res[r].avgStopped();
+                                sink.accept(taken[r], res[r]);
+                                System.out.println("SEED: seed=" + taken[r] + " done=" + doneSeeds.incrementAndGet() + "/" + seeds.length
+                                        + " time_ms=" + res[r].timeMs() + " avg_flow=" + res[r].avgFlow() + " avg_stopped=" + res[r].avgStopped());
+                            }
+                        }
+                    } catch (RuntimeException | Error e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                    return null;
+                }));
+            }
+            await(pending, failed);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long wallMs = (System.nanoTime() - startNs) / 1_000_000L;
+        Summary summary = new Summary(seeds.length, workerCount, wallMs, mean(flows), stddev(flows), mean(stoppeds), stddev(stoppeds));
+        System.out.println("[" + Instant.now() + "] END ENSEMBLE elapsed=" + wallMs + " ms");
+        System.out.println("ENSEMBLE: seeds=" + summary.seeds() + " workers=" + summary.workers() + " wall_ms=" + wallMs
+                + " seeds_per_s=" + (seeds.length * 1000.0 / Math.max(1, wallMs))
+                + " avg_flow_mean=" + summary.meanFlow() + " avg_flow_sd=" + summary.stdFlow()
+                + " avg_stopped_mean=" + summary.meanStopped() + " avg_stopped_sd=" + summary.stdStopped());
+        return summary;
+    }
+
+    // "1..500", "3,7,11" or a mix such as "1..10,20,30..32".
+    public static long[] parseSeeds(String spec) {
+        List<Long> seeds = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String p = part.trim();
+            if (p.isEmpty()) {
+                continue;
+            }
+            int range = p.indexOf("..");
+            if (range < 0) {
+                seeds.add(Long.parseLong(p));
+                continue;
+            }
+            long from = Long.parseLong(p.substring(0, range).trim());
+            long to = Long.parseLong(p.substring(range + 2).trim());
+            if (to < from || to - from >= Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid seed range: " + p);
+            }
+            for (long s = from; s <= to; s++) {
+                seeds.add(s);
+            }
+        }
+        long[] out = new long[seeds.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = seeds.get(i);
+        }
+        return out;
+    }
+
+    private static void await(List<Future<?>> pending, AtomicBoolean failed) {
+        RuntimeException failure = null;
+        for (Future<?> f : pending) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.set(true);
+                throw new RuntimeException("Interrupted while waiting for ensemble workers", e);
+            } catch (ExecutionException e) {
+                // The worker already set failed; keep waiting so no run is still writing to the sink on close.
+                if (failure == null) {
+                    failure = new RuntimeException("Ensemble run failed", e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static double mean(double[] a) {
+        double s = 0.0;
+        for (double v : a) {
+            s += v;
+        }
+        return s / a.length;
+    }
+
+    private static double stddev(double[] a) {
+        if (a.length <= 1) {
+            return 0.0;
+        }
+        double m = mean(a);
+        double s2 = 0.0;
+        for (double v : a) {
+            double d = v - m;
+            s2 += d * d;
+        }
+        return Math.sqrt(s2 / (a.length - 1));
+    }
+
+    // Rows in completion order; the CSV is flushed per row so partial results survive an aborted ensemble.
+    private abstract static class ResultSink implements AutoCloseable {
+
+        static ResultSink open(Path out, int rows) {
+            return ColumnarFormat.isColumnar(out) ? new ColumnarSink(out, rows) : new CsvSink(out);
+        }
+
+        abstract void accept(long seed, SimulationResult res);
+
+        @Override
+        public abstract void close();
+    }
+
+    private static final class CsvSink extends ResultSink {
+        private final Path out;
+        private final BufferedWriter w;
+
+        private CsvSink(Path out) {
+            this.out = out;
+            try {
+                Path parent = out.getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                this.w = Files.newBufferedWriter(out);
+                w.write(HEADER);
+                w.newLine();
+                w.flush();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write ensemble CSV: " + out, e);
+            }
+        }
+
+        @Override
+        synchronized void accept(long seed, SimulationResult res) {
+            try {
+                w.write(Long.toString(seed));
+                w.write(',');
+                w.write(Integer.toString(res.vehicles()));
+                w.write(',');
+                w.write(Integer.toString(res.ticks()));
+                w.write(',');
+                w.write(Long.toString(res.timeMs()));
+                w.write(',');
+                w.write(Double.toString(res.avgFlow()));
+                w.write(',');
+                w.write(Double.toString(res.avgStopped()));
+                w.newLine();
+                w.flush();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write ensemble CSV: " + out, e);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            try {
+                w.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write ensemble CSV: " + out, e);
+            }
+        }
+    }
+
+    private static final class ColumnarSink extends ResultSink {
+        private static final List<ColumnarFormat.Column> SCHEMA = List.of(
+                new ColumnarFormat.Column("seed", ColumnarFormat.Type.INT64),
+                new ColumnarFormat.Column("N", ColumnarFormat.Type.INT32),
+                new ColumnarFormat.Column("ticks", ColumnarFormat.Type.INT32),
+                new ColumnarFormat.Column("time_ms", ColumnarFormat.Type.INT64),
+                new ColumnarFormat.Column("avg_flow", ColumnarFormat.Type.FLOAT64),
+                new ColumnarFormat.Column("avg_stopped", ColumnarFormat.Type.FLOAT64)
+        );
+
+        private final ColumnarWriter w;
+        private long rows;
+
+        private ColumnarSink(Path out, int capacity) {
+            this.w = new ColumnarWriter(out, capacity, SCHEMA);
+        }
+
+        @Override
+        synchronized void accept(long seed, SimulationResult res) {
+            long r = rows++;
+            w.putLong(0, r, seed);
+            w.putInt(1, r, res.vehicles());
+            w.putInt(2, r, res.ticks());
+            w.putLong(3, r, res.timeMs());
+            w.putDouble(4, r, res.avgFlow());
+            w.putDouble(5, r, res.avgStopped());
+        }
+
+        // Like the CSV, the rows of the seeds that finished are kept even if the ensemble fails.
+        @Override
+        public synchronized void close() {
+            w.truncate(rows);
+            w.finish();
+        }
+    }
+}
@@ -1,22 +1,60 @@
 package com.nuti.traffic.bench;
 
+import com.nuti.traffic.grid.GridLoader;
+import com.nuti.traffic.io.ColumnarFormat;
+import com.nuti.traffic.io.ColumnarWriter;
+import com.nuti.traffic.model.Grid;
 import com.nuti.traffic.sim.ParallelEngine;
+import com.nuti.traffic.sim.ResultCache;
 import com.nuti.traffic.sim.RunMode;
 import com.nuti.traffic.sim.SequentialEngine;
 import com.nuti.traffic.sim.SimulationConfig;
+import com.nuti.traffic.sim.SimulationEngine;
 import com.nuti.traffic.sim.SimulationResult;
+import com.nuti.traffic.sim.SimulationSession;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
 
+// Every (ticks, N, mode, threads) point is measured with its own repetitions. With a core budget above 1, independent
+// points run concurrently on disjoint shares of it (CoreScheduler), and an extra shared_cores column records how many
+// cores other points held during each measurement, so rows taken on a shared machine can be told apart.
 public final class SweepRunner {
 
     private final SequentialEngine sequential = new SequentialEngine();
     private final ParallelEngine parallel = new ParallelEngine();
+    private final ResultCache cache;
+
+    public SweepRunner() {
+        this(null);
+    }
+
+    // With a result cache, the first repetition of each point is recorded in it (or checked against it); every
+    // repetition still runs, since the timings are the point of the measurement.
+    public SweepRunner(ResultCache cache) {
+        this.cache = cache;
+    }
+
+    public void runSweep(
+            Path grid,
+            int[] nList,
+            int[] ticksList,
+            long seed,
+            double turnProb,
+            int lightPeriod,
+            int repetitions,
+            int[] threadList,
+            Path outCsv
+    ) {
+        runSweep(grid, nList, ticksList, seed, turnProb, lightPeriod, repetitions, threadList, 1, outCsv);
+    }
 
     public void runSweep(
             Path grid,
@@ -27,6 +65,7 @@ public final class SweepRunner {
             int lightPeriod,
             int repetitions,
             int[] threadList,
+            int cores,
             Path outCsv
     ) {
         if (nList.length == 0) {
@@ -42,26 +81,88 @@ public final class SweepRunner {
             throw new IllegalArgumentException("threadList must be non-empty");
         }
 
-        List<Row> rows = new ArrayList<>();
+        if (cores <= 0) {
+            throw new IllegalArgumentException("cores must be > 0");
+        }
 
+        // Point order: per (ticks, N), the sequential point followed by one parallel point per thread count.
+        List<int[]> points = new ArrayList<>();
         for (int ticks : ticksList) {
             for (int n : nList) {
-                Stats seq = measure(grid, n, ticks, seed, turnProb, lightPeriod, repetitions, RunMode.SEQUENTIAL, 1);
-                rows.add(new Row(grid.toString(), "SEQUENTIAL", n, ticks, 1, repetitions, seq.meanTimeMs, seq.stdTimeMs, seq.meanFlow, seq.meanStopped, 1.0, 1.0));
-
+                points.add(new int[] { ticks, n, 0 });
                 for (int p : threadList) {
-                    Stats par = measure(grid, n, ticks, seed, turnProb, lightPeriod, repetitions, RunMode.PARALLEL, p);
-                    double speedup = seq.meanTimeMs / par.meanTimeMs;
-                    double efficiency = speedup / p;
-                    rows.add(new Row(grid.toString(), "PARALLEL", n, ticks, p, repetitions, par.meanTimeMs, par.stdTimeMs, par.meanFlow, par.meanStopped, speedup, efficiency));
+                    points.add(new int[] { ticks, n, p });
                 }
             }
         }
 
-        writeCsv(outCsv, rows);
+        // Sessions are not thread-safe: each running point borrows one, and they are reused as points finish.
+        Grid loaded = new GridLoader().load(grid);
+        Deque<SimulationSession> idle = new ArrayDeque<>();
+        List<SimulationSession> sessions = new ArrayList<>();
+        int[] pointCores = new int[points.size()];
+        List<Callable<Stats>> tasks = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            int[] pt = points.get(i);
+            boolean sequentialPoint = pt[2] == 0;
+            pointCores[i] = sequentialPoint ? 1 : pt[2];
+            tasks.add(() -> {
+                SimulationSession session;
+                synchronized (idle) {
+                    session = idle.poll();
+                    if (session == null) {
+                        session = new SimulationSession(grid, loaded);
+                        sessions.add(session);
+                    }
+                }
+                try {
+                    return sequentialPoint
+                            ? measure(session, grid, pt[1], pt[0], seed, turnProb, lightPeriod, repetitions, RunMode.SEQUENTIAL, 1)
+                            : measure(session, grid, pt[1], pt[0], seed, turnProb, lightPeriod, repetitions, RunMode.PARALLEL, pt[2]);
+                } finally {
+                    synchronized (idle) {
+                        idle.push(session);
+                    }
+                }
+            });
+        }
+
+        List<CoreScheduler.Outcome<Stats>> outcomes;
+        try {
+            outcomes = new CoreScheduler(cores).runAll(pointCores, tasks);
+        } finally {
+            for (SimulationSession session : sessions) {
+                session.close();
+            }
+        }
+
+        List<Row> rows = new ArrayList<>();
+        Stats seq = null;
+        for (int i = 0; i < points.size(); i++) {
+            int[] pt = points.get(i);
+            Stats st = outcomes.get(i).value();
+            int sharedCores = outcomes.get(i).sharedCores();
+            if (pt[2] == 0) {
+                seq = st;
+                rows.add(new Row(grid.toString(), "SEQUENTIAL", pt[1], pt[0], 1, repetitions, st.meanTimeMs, st.stdTimeMs, st.meanFlow, st.meanStopped, 1.0, 1.0, sharedCores));
+            } else {
+                double speedup = seq.meanTimeMs / st.meanTimeMs;
+                double efficiency = speedup / pt[2];
+                rows.add(new Row(grid.toString(), "PARALLEL", pt[1], pt[0], pt[2], repetitions, st.meanTimeMs, st.stdTimeMs, st.meanFlow, st.meanStopped, speedup, efficiency, sharedCores));
+            }
+        }
+
+        // With one core the points run one after another and shared_cores would always be 0, so the schema stays as it was.
+        boolean sharedColumn = cores > 1;
+        if (ColumnarFormat.isColumnar(outCsv)) {
+            writeColumnar(outCsv, rows, sharedColumn);
+        } else {
+            writeCsv(outCsv, rows, sharedColumn);
+        }
     }
 
     private Stats measure(
+            SimulationSession session,
             Path grid,
             int vehicles,
             int ticks,
@@ -78,7 +179,8 @@ public final class SweepRunner {
 
         for (int r = 0; r < repetitions; r++) {
             SimulationConfig cfg = new SimulationConfig(grid, vehicles, ticks, seed, turnProb, lightPeriod, mode, threads, null, false);
-            SimulationResult res = (mode == RunMode.SEQUENTIAL) ? sequential.run(cfg) : parallel.run(cfg);
+            SimulationEngine engine = (mode == RunMode.SEQUENTIAL) ? sequential : parallel;
+            SimulationResult res = (cache != null && r == 0) ? cache.runTimed(engine, cfg, session) : engine.run(cfg, session);
             times[r] = res.timeMs();
             flows[r] = res.avgFlow();
             stoppeds[r] = res.avgStopped();
@@ -87,7 +189,7 @@ public final class SweepRunner {
         return Stats.from(times, flows, stoppeds);
     }
 
-    private void writeCsv(Path out, List<Row> rows) {
+    private void writeCsv(Path out, List<Row> rows, boolean sharedColumn) {
         try {
             Path parent = out.getParent();
             if (parent != null) {
@@ -95,6 +197,9 @@ public final class SweepRunner {
             }
             try (BufferedWriter w = Files.newBufferedWriter(out)) {
                 w.write("grid,mode,N,ticks,threads,reps,time_ms,std_time_ms,avg_flow,avg_stopped,speedup,efficiency");
+                if (sharedColumn) {
+                    w.write(",shared_cores");
+                }
                 w.newLine();
                 for (Row row : rows) {
                     w.write(row.grid);
@@ -120,6 +225,10 @@ public final class SweepRunner {
                     w.write(Double.toString(row.speedup));
                     w.write(',');
                     w.write(Double.toString(row.efficiency));
+                    if (sharedColumn) {
+                        w.write(',');
+                        w.write(Integer.toString(row.sharedCores));
+                    }
                     w.newLine();
                 }
             }
@@ -128,6 +237,47 @@ public final class SweepRunner {
         }
     }
 
+    private void writeColumnar(Path out, List<Row> rows, boolean sharedColumn) {
+        List<ColumnarFormat.Column> schema = new ArrayList<>(List.of(
+                new ColumnarFormat.Column("grid", ColumnarFormat.Type.STRING),
+                new ColumnarFormat.Column("mode", ColumnarFormat.Type.STRING),
+                new ColumnarFormat.Column("N", ColumnarFormat.Type.INT32),
+                new ColumnarFormat.Column("ticks", ColumnarFormat.Type.INT32),
+                new ColumnarFormat.Column("threads", ColumnarFormat.Type.INT32),
+                new ColumnarFormat.Column("reps", ColumnarFormat.Type.INT32),
+                new ColumnarFormat.Column("time_ms", ColumnarFormat.Type.FLOAT64),
+                new ColumnarFormat.Column("std_time_ms", ColumnarFormat.Type.FLOAT64),
+                new ColumnarFormat.Column("avg_flow", ColumnarFormat.Type.FLOAT64),
+                new ColumnarFormat.Column("avg_stopped", ColumnarFormat.Type.FLOAT64),
+                new ColumnarFormat.Column("speedup", ColumnarFormat.Type.FLOAT64),
+                new ColumnarFormat.Column("efficiency", ColumnarFormat.Type.FLOAT64)
+        ));
+        if (sharedColumn) {
+            schema.add(new ColumnarFormat.Column("shared_cores", ColumnarFormat.Type.INT32));
+        }
+        try (ColumnarWriter w = new ColumnarWriter(out, rows.size(), schema)) {
+            for (int r = 0; r < rows.size(); r++) {
+                Row row = rows.get(r);
+                w.putString(0, r, row.grid);
+                w.putString(1, r, row.mode);
+                w.putInt(2, r, row.n);
+                w.putInt(3, r, row.ticks);
+                w.putInt(4, r, row.threads);
+                w.putInt(5, r, row.reps);
+                w.putDouble(6, r, row.timeMs);
+                w.putDouble(7, r, row.stdTimeMs);
+                w.putDouble(8, r, row.avgFlow);
+                w.putDouble(9, r, row.avgStopped);
+                w.putDouble(10, r, row.speedup);
+                w.putDouble(11, r, row.efficiency);
+                if (sharedColumn) {
+                    w.putInt(12, r, row.sharedCores);
+                }
+            }
+            w.finish();
+        }
+    }
+
     private record Row(
             String grid,
             String mode,
@@ -140,7 +290,8 @@ public final class SweepRunner {
             double avgFlow,
             double avgStopped,
             double speedup,
-            double efficiency
+            double efficiency,
+            int sharedCores
     ) {
     }
 
@@ -0,0 +1,158 @@
+package com.nuti.traffic.grid;
+
+import com.nuti.traffic.model.CellType;
+import com.nuti.traffic.model.Grid;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public final class BinaryGridFormat {
+
+    public static final String EXTENSION = ".tgrid";
+
+    private static final int MAGIC = 0x44524754;
+    private static final int VERSION = 1;
+    private static final int HASH_BYTES = 32;
+    private static final int HEADER_BYTES = 64;
+
+    private BinaryGridFormat() {
+    }
+
+    public static boolean isBinaryGrid(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().endsWith(EXTENSION);
+    }
+
+    public static void write(Path path, Grid grid, byte[] sourceHash) {
+        if (sourceHash.length != HASH_BYTES) {
+            throw new IllegalArgumentException("sourceHash must be " + HASH_BYTES + " bytes");
+        }
+
+        int cellCount = grid.cellCount();
+        int intersections = grid.intersectionCount();
+        int intersectionsOffset = align4(HEADER_BYTES + cellCount);
+        long size = intersectionsOffset + 4L * intersections;
+
+        try {
+            Path parent = path.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buf.order(ByteOrder.LITTLE_ENDIAN);
+                buf.putInt(MAGIC);
+                buf.putInt(VERSION);
+                buf.putInt(grid.width());
+                buf.putInt(grid.height());
+                buf.putInt(intersections);
+                buf.put(sourceHash);
+
+                buf.position(HEADER_BYTES);
+                for (int i = 0; i < cellCount; i++) {
+                    buf.put((byte) grid.cellTypeAt(i).ordinal());
+                }
+
+                buf.position(intersectionsOffset);
+                for (int i = 0; i < intersections; i++) {
+                    buf.putInt(grid.intersectionCellIdx(i));
+                }
+                buf.force();
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write compiled grid: " + path, e);
+        }
+    }
+
+    public static Grid read(Path path) {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES) {
+                throw new GridValidationException("Compiled grid is truncated: " + path);
+            }
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            int width = readHeader(buf, path);
+            int height = buf.getInt();
+            int intersections = buf.getInt();
+
+            long cellCountLong = (long) width * height;
+            if (width <= 0 || height <= 0 || intersections < 0 || cellCountLong > Integer.MAX_VALUE) {
+                throw new GridValidationException("Invalid compiled grid header: " + path);
+            }
+            int cellCount = (int) cellCountLong;
+            int intersectionsOffset = align4(HEADER_BYTES + cellCount);
+            if (size < intersectionsOffset + 4L * intersections) {
+                throw new GridValidationException("Compiled grid is truncated: " + path);
+            }
+
+            CellType[] types = CellType.values();
+            CellType[] cells = new CellType[cellCount];
+            buf.position(HEADER_BYTES);
+            for (int i = 0; i < cellCount; i++) {
+                int t = buf.get();
+                if (t < 0 || t >= types.length) {
+                    throw new GridValidationException("Invalid cell type " + t + " in compiled grid: " + path);
+                }
+                cells[i] = types[t];
+            }
+
+            int[] intersectionIndexByCell = new int[cellCount];
+            Arrays.fill(intersectionIndexByCell, -1);
+            int[] intersectionCellIdx = new int[intersections];
+            buf.position(intersectionsOffset);
+            for (int i = 0; i < intersections; i++) {
+                int cell = buf.getInt();
+                if (cell < 0 || cell >= cellCount || cells[cell] != CellType.INTERSECTION) {
+                    throw new GridValidationException("Invalid intersection cell " + cell + " in compiled grid: " + path);
+                }
+                intersectionCellIdx[i] = cell;
+                intersectionIndexByCell[cell] = i;
+            }
+
+            return new Grid(width, height, cells, intersectionIndexByCell, intersectionCellIdx);
+        } catch (IOException e) {
+            throw new GridValidationException("Failed to read compiled grid: " + path, e);
+        }
+    }
+
+    public static byte[] readSourceHash(Path path) {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES) {
+                throw new GridValidationException("Compiled grid is truncated: " + path);
+            }
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readHeader(buf, path);
+            buf.position(20);
+            byte[] hash = new byte[HASH_BYTES];
+            buf.get(hash);
+            return hash;
+        } catch (IOException e) {
+            throw new GridValidationException("Failed to read compiled grid: " + path, e);
+        }
+    }
+
+    private static int readHeader(ByteBuffer buf, Path path) {
+        if (buf.getInt() != MAGIC) {
+            throw new GridValidationException("Not a compiled grid file: " + path);
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            throw new GridValidationException("Unsupported compiled grid version " + version + ": " + path);
+        }
+        return buf.getInt();
+    }
+
+    private static int align4(int v) {
+        return (v + 3) & ~3;
+    }
+}
@@ -0,0 +1,69 @@
+package com.nuti.traffic.grid;
+
+import com.nuti.traffic.model.Grid;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+public final class GridCache {
+
+    private final Path cacheDir;
+    private final GridLoader loader = new GridLoader();
+
+    public GridCache(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public Path compile(Path source) {
+        if (BinaryGridFormat.isBinaryGrid(source)) {
+            return source;
+        }
+
+        byte[] hash = sha256(source);
+        Path compiled = compiledPath(source, hash);
+        if (Files.isRegularFile(compiled)) {
+            try {
+                if (Arrays.equals(hash, BinaryGridFormat.readSourceHash(compiled))) {
+                    return compiled;
+                }
+            } catch (GridValidationException e) {
+                // Stale or corrupt entry: rebuild it below.
+            }
+        }
+
+        Grid grid = loader.load(source);
+        BinaryGridFormat.write(compiled, grid, hash);
+        return compiled;
+    }
+
+    public Grid load(Path source) {
+        return loader.load(compile(source));
+    }
+
+    private Path compiledPath(Path source, byte[] hash) {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String stem = (dot > 0) ? name.substring(0, dot) : name;
+        String shortHash = HexFormat.of().formatHex(hash, 0, 8);
+        return cacheDir.resolve(stem + "-" + shortHash + BinaryGridFormat.EXTENSION);
+    }
+
+    public static byte[] sha256(Path source) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(source);
+        } catch (IOException e) {
+            throw new GridValidationException("Failed to read grid file: " + source, e);
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -12,6 +12,10 @@ import java.util.List;
 public final class GridLoader {
 
     public Grid load(Path path) {
+        if (BinaryGridFormat.isBinaryGrid(path)) {
+            return BinaryGridFormat.read(path);
+        }
+
         List<String> lines;
         try {
             lines = Files.readAllLines(path);
@@ -0,0 +1,163 @@
+package com.nuti.traffic.grid;
+
+import com.nuti.traffic.model.Grid;
+import com.nuti.traffic.model.LightProgram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Plan file, one directive per line ('#' starts a comment):
+//   plan <name> <ticks>:<H|V|R> ...   phases of a cycle (R = all red)
+//   default <plan> [offset]           plan for intersections without a 'light' line
+//   wave <ticksPerColumn> <ticksPerRow>  adds x*a + y*b to every offset (green wave)
+//   light <x> <y> <plan> [offset]     plan for the intersection at (x, y)
+public final class LightProgramLoader {
+
+    public LightProgram load(Path path, Grid grid) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path);
+        } catch (IOException e) {
+            throw new GridValidationException("Failed to read light plan file: " + path, e);
+        }
+
+        Map<String, Integer> planIndex = new HashMap<>();
+        List<byte[]> plans = new ArrayList<>();
+        int intersections = grid.intersectionCount();
+        int[] planOf = new int[intersections];
+        int[] offset = new int[intersections];
+        boolean[] explicit = new boolean[intersections];
+        int defaultPlan = -1;
+        int defaultOffset = 0;
+        int waveX = 0;
+        int waveY = 0;
+
+        for (int ln = 0; ln < lines.size(); ln++) {
+            String line = lines.get(ln);
+            int hash = line.indexOf('#');
+            if (hash >= 0) {
+                line = line.substring(0, hash);
+            }
+            String[] tok = line.trim().split("\\s+");
+            if (tok.length == 0 || tok[0].isEmpty()) {
+                continue;
+            }
+            int lineNo = ln + 1;
+            switch (tok[0]) {
+                case "plan" -> {
+                    expectArgs(tok, 3, Integer.MAX_VALUE, lineNo);
+                    if (planIndex.containsKey(tok[1])) {
+                        throw error(lineNo, "duplicate plan '" + tok[1] + "'");
+                    }
+                    planIndex.put(tok[1], plans.size());
+                    plans.add(parsePhases(tok, lineNo));
+                }
+                case "default" -> {
+                    expectArgs(tok, 2, 3, lineNo);
+                    defaultPlan = plan(planIndex, tok[1], lineNo);
+                    defaultOffset = (tok.length == 3) ? parseInt(tok[2], lineNo) : 0;
+                }
+                case "wave" -> {
+                    expectArgs(tok, 3, 3, lineNo);
+                    waveX = parseInt(tok[1], lineNo);
+                    waveY = parseInt(tok[2], lineNo);
+                }
+                case "light" -> {
+                    expectArgs(tok, 4, 5, lineNo);
+                    int x = parseInt(tok[1], lineNo);
+                    int y = parseInt(tok[2], lineNo);
+                    if (!grid.inBounds(x, y) || grid.intersectionIndexAtCell(grid.idx(x, y)) < 0) {
+                        throw error(lineNo, "(" + x + "," + y + ") is not an intersection");
+                    }
+                    int li = grid.intersectionIndexAtCell(grid.idx(x, y));
+                    planOf[li] = plan(planIndex, tok[3], lineNo);
+                    offset[li] = (tok.length == 5) ? parseInt(tok[4], lineNo) : 0;
+                    explicit[li] = true;
+                }
+                default -> throw error(lineNo, "unknown directive '" + tok[0] + "'");
+            }
+        }
+
+        if (plans.isEmpty()) {
+            throw new GridValidationException("Light plan file defines no plans: " + path);
+        }
+        for (int li = 0; li < intersections; li++) {
+            if (!explicit[li]) {
+                if (defaultPlan < 0) {
+                    int cell = grid.intersectionCellIdx(li);
+                    throw new GridValidationException("No plan for intersection (" + grid.x(cell) + "," + grid.y(cell) + ") and no 'default' in " + path);
+                }
+                planOf[li] = defaultPlan;
+                offset[li] = defaultOffset;
+            }
+            int cell = grid.intersectionCellIdx(li);
+            offset[li] += grid.x(cell) * waveX + grid.y(cell) * waveY;
+        }
+
+        return new LightProgram(plans.toArray(new byte[0][]), planOf, offset);
+    }
+
+    private static byte[] parsePhases(String[] tok, int lineNo) {
+        int total = 0;
+        int[] durations = new int[tok.length - 2];
+        byte[] masks = new byte[tok.length - 2];
+        for (int k = 2; k < tok.length; k++) {
+            int colon = tok[k].indexOf(':');
+            if (colon <= 0) {
+                throw error(lineNo, "expected <ticks>:<H|V|R>, got '" + tok[k] + "'");
+            }
+            int d = parseInt(tok[k].substring(0, colon), lineNo);
+            if (d <= 0) {
+                throw error(lineNo, "phase duration must be > 0");
+            }
+            masks[k - 2] = switch (tok[k].substring(colon + 1)) {
+                case "H" -> LightProgram.ALLOW_H;
+                case "V" -> LightProgram.ALLOW_V;
+                case "R" -> LightProgram.ALLOW_NONE;
+                default -> throw error(lineNo, "unknown phase '" + tok[k].substring(colon + 1) + "' (expected H|V|R)");
+            };
+            durations[k - 2] = d;
+            total += d;
+        }
+
+        byte[] out = new byte[total];
+        int t = 0;
+        for (int k = 0; k < durations.length; k++) {
+            for (int i = 0; i < durations[k]; i++) {
+                out[t++] = masks[k];
+            }
+        }
+        return out;
+    }
+
+    private static int plan(Map<String, Integer> planIndex, String name, int lineNo) {
+        Integer p = planIndex.get(name);
+        if (p == null) {
+            throw error(lineNo, "unknown plan '" + name + "'");
+        }
+        return p;
+    }
+
+    private static void expectArgs(String[] tok, int min, int max, int lineNo) {
+        if (tok.length < min || tok.length > max) {
+            throw error(lineNo, "wrong number of arguments for '" + tok[0] + "'");
+        }
+    }
+
+    private static int parseInt(String s, int lineNo) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw error(lineNo, "invalid integer '" + s + "'");
+        }
+    }
+
+    private static GridValidationException error(int lineNo, String message) {
+        return new GridValidationException("Invalid light plan at line " + lineNo + ": " + message);
+    }
+}
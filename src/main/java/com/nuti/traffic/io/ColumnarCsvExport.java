@@ -0,0 +1,76 @@
+package com.nuti.traffic.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Writes the same text the CSV writers produce: header of column names, Integer/Long/Double.toString values.
+public final class ColumnarCsvExport {
+
+    private ColumnarCsvExport() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Uso: java -cp traffic-abm.jar com.nuti.traffic.io.ColumnarCsvExport <entrada.tcol> [salida.csv]");
+            System.exit(2);
+        }
+        ColumnarReader reader = new ColumnarReader(Path.of(args[0]));
+        if (args.length == 2) {
+            export(reader, Path.of(args[1]));
+            return;
+        }
+        try {
+            Writer w = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            export(reader, w);
+            w.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to export columnar file: " + args[0], e);
+        }
+    }
+
+    public static void export(ColumnarReader reader, Path out) {
+        try {
+            Path parent = out.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (BufferedWriter w = Files.newBufferedWriter(out)) {
+                export(reader, w);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to export columnar file to CSV: " + out, e);
+        }
+    }
+
+    public static void export(ColumnarReader reader, Writer w) throws IOException {
+        List<ColumnarFormat.Column> columns = reader.columns();
+        for (int c = 0; c < columns.size(); c++) {
+            if (c > 0) {
+                w.write(',');
+            }
+            w.write(columns.get(c).name());
+        }
+        w.write(System.lineSeparator());
+
+        for (long row = 0; row < reader.rowCount(); row++) {
+            for (int c = 0; c < columns.size(); c++) {
+                if (c > 0) {
+                    w.write(',');
+                }
+                switch (columns.get(c).type()) {
+                    case INT32 -> w.write(Integer.toString(reader.getInt(c, row)));
+                    case INT64 -> w.write(Long.toString(reader.getLong(c, row)));
+                    case FLOAT64 -> w.write(Double.toString(reader.getDouble(c, row)));
+                    case STRING -> w.write(reader.getString(c, row));
+                }
+            }
+            w.write(System.lineSeparator());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.nuti.traffic.io;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+// Little-endian layout: fixed header (magic, version, rowCount, columnCount), column names and types, then per
+// column its data offset and dictionary offset. Each column is one contiguous, 8-aligned block of fixed-width values;
+// STRING columns hold int codes into a dictionary stored after the data.
+public final class ColumnarFormat {
+
+    public static final String EXTENSION = ".tcol";
+
+    static final int MAGIC = 0x4C4F4354;
+    static final int VERSION = 1;
+    static final int FIXED_HEADER_BYTES = 24;
+    static final int ROW_COUNT_OFFSET = 8;
+
+    private ColumnarFormat() {
+    }
+
+    public enum Type {
+        INT32(4),
+        INT64(8),
+        FLOAT64(8),
+        STRING(4);
+
+        private final int width;
+
+        Type(int width) {
+            this.width = width;
+        }
+
+        public int width() {
+            return width;
+        }
+    }
+
+    public record Column(String name, Type type) {
+    }
+
+    public static boolean isColumnar(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().endsWith(EXTENSION);
+    }
+
+    static int headerBytes(List<Column> columns) {
+        int bytes = FIXED_HEADER_BYTES;
+        for (Column c : columns) {
+            bytes += 4 + utf8Length(c.name());
+        }
+        return align8(bytes) + columns.size() * 16;
+    }
+
+    static int utf8Length(String s) {
+        return s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    static long align8(long v) {
+        return (v + 7) & ~7L;
+    }
+
+    static int align8(int v) {
+        return (v + 7) & ~7;
+    }
+}
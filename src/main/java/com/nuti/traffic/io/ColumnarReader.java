@@ -0,0 +1,164 @@
+package com.nuti.traffic.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Columns are read-only views over the mapped file; nothing is copied except the (small) string dictionaries.
+public final class ColumnarReader {
+
+    private final Path path;
+    private final long rowCount;
+    private final List<ColumnarFormat.Column> columns;
+    private final ByteBuffer[] data;
+    private final String[][] dictionaries;
+
+    public ColumnarReader(Path path) {
+        this.path = path;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < ColumnarFormat.FIXED_HEADER_BYTES) {
+                throw new IllegalArgumentException("Columnar file is truncated: " + path);
+            }
+            ByteBuffer fixed = map(ch, 0, ColumnarFormat.FIXED_HEADER_BYTES);
+            if (fixed.getInt() != ColumnarFormat.MAGIC) {
+                throw new IllegalArgumentException("Not a columnar file: " + path);
+            }
+            int version = fixed.getInt();
+            if (version != ColumnarFormat.VERSION) {
+                throw new IllegalArgumentException("Unsupported columnar version " + version + ": " + path);
+            }
+            this.rowCount = fixed.getLong();
+            int columnCount = fixed.getInt();
+            if (rowCount < 0 || columnCount < 0) {
+                throw new IllegalArgumentException("Invalid columnar header: " + path);
+            }
+
+            ByteBuffer header = map(ch, 0, (int) Math.min(size, Integer.MAX_VALUE));
+            header.position(ColumnarFormat.FIXED_HEADER_BYTES);
+            ColumnarFormat.Type[] types = ColumnarFormat.Type.values();
+            List<ColumnarFormat.Column> cols = new ArrayList<>(columnCount);
+            for (int c = 0; c < columnCount; c++) {
+                int type = header.get();
+                header.get();
+                byte[] name = new byte[header.getShort() & 0xFFFF];
+                header.get(name);
+                if (type < 0 || type >= types.length) {
+                    throw new IllegalArgumentException("Invalid column type " + type + ": " + path);
+                }
+                cols.add(new ColumnarFormat.Column(new String(name, StandardCharsets.UTF_8), types[type]));
+            }
+            this.columns = List.copyOf(cols);
+            header.position(ColumnarFormat.align8(header.position()));
+
+            this.data = new ByteBuffer[columnCount];
+            this.dictionaries = new String[columnCount][];
+            for (int c = 0; c < columnCount; c++) {
+                long dataOffset = header.getLong();
+                long dictOffset = header.getLong();
+                long bytes = rowCount * columns.get(c).type().width();
+                if (dataOffset + bytes > size || bytes > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Columnar file is truncated: " + path);
+                }
+                data[c] = map(ch, dataOffset, (int) bytes);
+                if (columns.get(c).type() == ColumnarFormat.Type.STRING) {
+                    dictionaries[c] = readDictionary(ch, dictOffset, size);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read columnar file: " + path, e);
+        }
+    }
+
+    public long rowCount() {
+        return rowCount;
+    }
+
+    public List<ColumnarFormat.Column> columns() {
+        return columns;
+    }
+
+    public int columnIndex(String name) {
+        for (int c = 0; c < columns.size(); c++) {
+            if (columns.get(c).name().equals(name)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("No column " + name + " in " + path);
+    }
+
+    public IntBuffer ints(int column) {
+        require(column, ColumnarFormat.Type.INT32);
+        return data[column].duplicate().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    public LongBuffer longs(int column) {
+        require(column, ColumnarFormat.Type.INT64);
+        return data[column].duplicate().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+    }
+
+    public DoubleBuffer doubles(int column) {
+        require(column, ColumnarFormat.Type.FLOAT64);
+        return data[column].duplicate().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+    public int getInt(int column, long row) {
+        require(column, ColumnarFormat.Type.INT32);
+        return data[column].getInt(index(row, 4));
+    }
+
+    public long getLong(int column, long row) {
+        require(column, ColumnarFormat.Type.INT64);
+        return data[column].getLong(index(row, 8));
+    }
+
+    public double getDouble(int column, long row) {
+        require(column, ColumnarFormat.Type.FLOAT64);
+        return data[column].getDouble(index(row, 8));
+    }
+
+    public String getString(int column, long row) {
+        require(column, ColumnarFormat.Type.STRING);
+        return dictionaries[column][data[column].getInt(index(row, 4))];
+    }
+
+    private int index(long row, int width) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("row " + row + " outside [0, " + rowCount + ")");
+        }
+        return (int) (row * width);
+    }
+
+    private void require(int column, ColumnarFormat.Type type) {
+        if (columns.get(column).type() != type) {
+            throw new IllegalArgumentException("Column " + columns.get(column).name() + " is " + columns.get(column).type() + ", not " + type);
+        }
+    }
+
+    private String[] readDictionary(FileChannel ch, long offset, long size) throws IOException {
+        if (offset <= 0 || offset + 4 > size) {
+            throw new IllegalArgumentException("Columnar file is missing a dictionary: " + path);
+        }
+        ByteBuffer buf = map(ch, offset, (int) Math.min(size - offset, Integer.MAX_VALUE));
+        String[] values = new String[buf.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            byte[] b = new byte[buf.getInt()];
+            buf.get(b);
+            values[i] = new String(b, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    private static ByteBuffer map(FileChannel ch, long offset, int size) throws IOException {
+        return ch.map(FileChannel.MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
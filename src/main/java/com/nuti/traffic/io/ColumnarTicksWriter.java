@@ -0,0 +1,41 @@
+package com.nuti.traffic.io;
+
+import java.nio.file.Path;
+import java.util.List;
+
+// Tick series as a .tcol file with INT32 columns tick, moved, stopped, written into the mapped columns as ticks close.
+public final class ColumnarTicksWriter implements TickSink {
+
+    public static final List<ColumnarFormat.Column> SCHEMA = List.of(
+            new ColumnarFormat.Column("tick", ColumnarFormat.Type.INT32),
+            new ColumnarFormat.Column("moved", ColumnarFormat.Type.INT32),
+            new ColumnarFormat.Column("stopped", ColumnarFormat.Type.INT32)
+    );
+
+    private final ColumnarWriter writer;
+    private long rows;
+
+    public ColumnarTicksWriter(Path path, int ticks) {
+        this.writer = new ColumnarWriter(path, ticks, SCHEMA);
+    }
+
+    @Override
+    public void accept(int tick, int moved, int stopped) {
+        writer.putInt(0, tick, tick);
+        writer.putInt(1, tick, moved);
+        writer.putInt(2, tick, stopped);
+        rows = tick + 1L;
+    }
+
+    @Override
+    public void close() {
+        writer.truncate(rows);
+        writer.finish();
+    }
+
+    // A failed run leaves no .tcol behind.
+    @Override
+    public void abort() {
+        writer.close();
+    }
+}
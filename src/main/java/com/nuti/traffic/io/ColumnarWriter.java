@@ -0,0 +1,213 @@
+package com.nuti.traffic.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Values are written straight into memory-mapped column blocks of a temporary sibling, which finish() moves to the
+// final name. Closing without finish() (a failed run) deletes it, so a partial file never looks like a result.
+public final class ColumnarWriter implements AutoCloseable {
+
+    private final Path path;
+    private final Path tmp;
+    private final long capacity;
+    private final List<ColumnarFormat.Column> columns;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] data;
+    private final long[] dataOffsets;
+    private final long dataEnd;
+    private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+
+    private long rowCount;
+    private boolean closed;
+
+    public ColumnarWriter(Path path, long rows, List<ColumnarFormat.Column> columns) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("rows must be >= 0");
+        }
+        this.path = path;
+        this.tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        this.capacity = rows;
+        this.rowCount = rows;
+        this.columns = List.copyOf(columns);
+
+        int headerBytes = ColumnarFormat.headerBytes(this.columns);
+        this.dataOffsets = new long[this.columns.size()];
+        long offset = headerBytes;
+        for (int c = 0; c < dataOffsets.length; c++) {
+            dataOffsets[c] = offset;
+            offset = ColumnarFormat.align8(offset + rows * this.columns.get(c).type().width());
+            dictionaries.add(this.columns.get(c).type() == ColumnarFormat.Type.STRING ? new HashMap<>() : null);
+        }
+        this.dataEnd = offset;
+
+        try {
+            Path parent = path.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.header = map(0, headerBytes);
+            this.data = new MappedByteBuffer[dataOffsets.length];
+            for (int c = 0; c < data.length; c++) {
+                data[c] = map(dataOffsets[c], rows * this.columns.get(c).type().width());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write columnar file: " + path, e);
+        }
+        writeHeader();
+    }
+
+    public long rowCapacity() {
+        return capacity;
+    }
+
+    // Rows past this count are dropped from the file, e.g. when a run stops before its last tick.
+    public void truncate(long rows) {
+        if (rows < 0 || rows > capacity) {
+            throw new IllegalArgumentException("rows must be in [0, " + capacity + "]");
+        }
+        rowCount = rows;
+    }
+
+    public void putInt(int column, long row, int value) {
+        data[column].putInt(index(column, row, ColumnarFormat.Type.INT32), value);
+    }
+
+    public void putLong(int column, long row, long value) {
+        data[column].putLong(index(column, row, ColumnarFormat.Type.INT64), value);
+    }
+
+    public void putDouble(int column, long row, double value) {
+        data[column].putDouble(index(column, row, ColumnarFormat.Type.FLOAT64), value);
+    }
+
+    public void putString(int column, long row, String value) {
+        int at = index(column, row, ColumnarFormat.Type.STRING);
+        Map<String, Integer> dict = dictionaries.get(column);
+        Integer code = dict.get(value);
+        if (code == null) {
+            code = dict.size();
+            dict.put(value, code);
+        }
+        data[column].putInt(at, code);
+    }
+
+    public void finish() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            header.putLong(ColumnarFormat.ROW_COUNT_OFFSET, rowCount);
+            long pos = dataEnd;
+            for (int c = 0; c < columns.size(); c++) {
+                Map<String, Integer> dict = dictionaries.get(c);
+                if (dict == null) {
+                    continue;
+                }
+                header.putLong(dictOffsetPosition(c), pos);
+                pos += writeDictionary(dict, pos);
+            }
+            header.force();
+            for (MappedByteBuffer b : data) {
+                b.force();
+            }
+            channel.truncate(pos);
+            channel.close();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write columnar file: " + path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to discard columnar file: " + tmp, e);
+        }
+    }
+
+    private int index(int column, long row, ColumnarFormat.Type type) {
+        if (columns.get(column).type() != type) {
+            throw new IllegalArgumentException("Column " + columns.get(column).name() + " is " + columns.get(column).type() + ", not " + type);
+        }
+        if (row < 0 || row >= capacity) {
+            throw new IndexOutOfBoundsException("row " + row + " outside [0, " + capacity + ")");
+        }
+        return (int) (row * type.width());
+    }
+
+    private void writeHeader() {
+        header.putInt(ColumnarFormat.MAGIC);
+        header.putInt(ColumnarFormat.VERSION);
+        header.putLong(rowCount);
+        header.putInt(columns.size());
+        header.putInt(0);
+        for (ColumnarFormat.Column c : columns) {
+            byte[] name = c.name().getBytes(StandardCharsets.UTF_8);
+            header.put((byte) c.type().ordinal());
+            header.put((byte) 0);
+            header.putShort((short) name.length);
+            header.put(name);
+        }
+        header.position(ColumnarFormat.align8(header.position()));
+        for (long offset : dataOffsets) {
+            header.putLong(offset);
+            header.putLong(0L);
+        }
+    }
+
+    private int dictOffsetPosition(int column) {
+        return header.capacity() - (columns.size() - column) * 16 + 8;
+    }
+
+    private long writeDictionary(Map<String, Integer> dict, long pos) throws IOException {
+        String[] values = new String[dict.size()];
+        int bytes = 4;
+        for (Map.Entry<String, Integer> e : dict.entrySet()) {
+            values[e.getValue()] = e.getKey();
+            bytes += 4 + ColumnarFormat.utf8Length(e.getKey());
+        }
+        ByteBuffer buf = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(values.length);
+        for (String v : values) {
+            byte[] b = v.getBytes(StandardCharsets.UTF_8);
+            buf.putInt(b.length);
+            buf.put(b);
+        }
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf, pos + buf.position());
+        }
+        return bytes;
+    }
+
+    private MappedByteBuffer map(long offset, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Column block of " + size + " bytes exceeds the 2 GiB mapping limit");
+        }
+        MappedByteBuffer b = channel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        return b;
+    }
+}
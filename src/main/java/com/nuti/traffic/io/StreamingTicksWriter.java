@@ -0,0 +1,185 @@
+package com.nuti.traffic.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+// Same rows as CsvTicksWriter, written while the run is in progress: the simulation thread fills a bounded ring and
+// a background thread formats and writes it (gzip if the path ends in .gz). A full ring blocks the producer; an empty
+// ring parks the writer until the producer publishes a row or the next flush is due.
+public final class StreamingTicksWriter implements TickSink {
+
+    private static final int DEFAULT_CAPACITY = 1 << 14;
+    private static final long FULL_RING_PARK_NS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long FLUSH_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1);
+    private static final byte[] HEADER = "tick,moved,stopped".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final Path path;
+    private final int[] ring;
+    private final int mask;
+    private final OutputStream out;
+    private final byte[] buf = new byte[1 << 16];
+    private final Thread writer;
+
+    private volatile long head;
+    private volatile long tail;
+    private volatile boolean closed;
+    private volatile boolean writerIdle;
+    private volatile Throwable failure;
+
+    private int bufLen;
+    private boolean finished;
+
+    public StreamingTicksWriter(Path path) {
+        this(path, DEFAULT_CAPACITY);
+    }
+
+    StreamingTicksWriter(Path path, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.path = path;
+        this.ring = new int[capacity * 3];
+        this.mask = capacity - 1;
+        try {
+            Path parent = path.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            OutputStream file = Files.newOutputStream(path);
+            this.out = path.getFileName().toString().endsWith(".gz") ? new GZIPOutputStream(file, 1 << 16, true) : file;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write ticks CSV: " + path, e);
+        }
+        this.writer = new Thread(this::drain, "traffic-ticks-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void accept(int tick, int moved, int stopped) {
+        long h = head;
+        while (h - tail > mask) {
+            checkFailure();
+            LockSupport.parkNanos(FULL_RING_PARK_NS);
+        }
+        int base = (int) (h & mask) * 3;
+        ring[base] = tick;
+        ring[base + 1] = moved;
+        ring[base + 2] = stopped;
+        head = h + 1;
+        if (writerIdle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        closed = true;
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        Throwable t = failure;
+        if (t != null) {
+            throw new RuntimeException("Failed to write ticks CSV: " + path, t);
+        }
+    }
+
+    private void drain() {
+        try (OutputStream o = out) {
+            o.write(HEADER);
+            o.write(NEWLINE);
+            long lastFlushNs = System.nanoTime();
+            while (true) {
+                long t = tail;
+                long h = head;
+                if (t == h) {
+                    if (closed && head == t) {
+                        break;
+                    }
+                    long untilFlushNs = FLUSH_INTERVAL_NS - (System.nanoTime() - lastFlushNs);
+                    if (bufLen > 0 && untilFlushNs <= 0) {
+                        o.write(buf, 0, bufLen);
+                        bufLen = 0;
+                        o.flush();
+                        lastFlushNs = System.nanoTime();
+                        continue;
+                    }
+                    // Re-check after publishing writerIdle: either the producer sees the flag and unparks us, or we
+                    // see its row here.
+                    writerIdle = true;
+                    if (head == t && !closed) {
+                        if (bufLen > 0) {
+                            LockSupport.parkNanos(this, untilFlushNs);
+                        } else {
+                            LockSupport.park(this);
+                        }
+                    }
+                    writerIdle = false;
+                    continue;
+                }
+                for (; t < h; t++) {
+                    if (bufLen > buf.length - 40) {
+                        o.write(buf, 0, bufLen);
+                        bufLen = 0;
+                    }
+                    int base = (int) (t & mask) * 3;
+                    appendInt(ring[base]);
+                    buf[bufLen++] = ',';
+                    appendInt(ring[base + 1]);
+                    buf[bufLen++] = ',';
+                    appendInt(ring[base + 2]);
+                    for (byte b : NEWLINE) {
+                        buf[bufLen++] = b;
+                    }
+                }
+                tail = h;
+            }
+            o.write(buf, 0, bufLen);
+            bufLen = 0;
+        } catch (Throwable e) {
+            failure = e;
+        }
+    }
+
+    private void appendInt(int value) {
+        long v = value;
+        if (v < 0) {
+            buf[bufLen++] = '-';
+            v = -v;
+        }
+        int start = bufLen;
+        do {
+            buf[bufLen++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        for (int i = start, j = bufLen - 1; i < j; i++, j--) {
+            byte tmp = buf[i];
+            buf[i] = buf[j];
+            buf[j] = tmp;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.nuti.traffic.io;
+
+// Receives one row per tick, in tick order, from the simulation thread that closes the tick.
+public interface TickSink extends AutoCloseable {
+
+    void accept(int tick, int moved, int stopped);
+
+    // Makes every accepted row durable; safe to call more than once.
+    @Override
+    void close();
+
+    // Called instead of close() when the run fails. By default the rows accepted so far are kept.
+    default void abort() {
+        close();
+    }
+}
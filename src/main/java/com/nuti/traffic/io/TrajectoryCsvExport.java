@@ -0,0 +1,86 @@
+package com.nuti.traffic.io;
+
+import com.nuti.traffic.model.Direction;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// One row per position change: tick is the first tick the vehicle starts at (x, y) heading dir, so the initial
+// placement is tick 0 and a move made during tick t is reported at t + 1.
+public final class TrajectoryCsvExport {
+
+    private TrajectoryCsvExport() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Uso: java -cp traffic-abm.jar com.nuti.traffic.io.TrajectoryCsvExport <entrada.traj> [salida.csv]");
+            System.exit(2);
+        }
+        TrajectoryReader reader = new TrajectoryReader(Path.of(args[0]));
+        if (args.length == 2) {
+            export(reader, Path.of(args[1]));
+            return;
+        }
+        try {
+            Writer w = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            export(reader, w);
+            w.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to export trajectory file: " + args[0], e);
+        }
+    }
+
+    public static void export(TrajectoryReader reader, Path out) {
+        try {
+            Path parent = out.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (BufferedWriter w = Files.newBufferedWriter(out)) {
+                export(reader, w);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to export trajectory file to CSV: " + out, e);
+        }
+    }
+
+    public static void export(TrajectoryReader reader, Writer w) throws IOException {
+        int width = reader.width();
+        w.write("tick,vehicle,x,y,dir");
+        w.write(System.lineSeparator());
+        for (int id = 0; id < reader.vehicles(); id++) {
+            writeRow(w, 0, id, reader.initialCell(id), reader.initialDir(id), width);
+        }
+        try {
+            reader.replay((tick, vehicleId, cell, dirIdx) -> {
+                try {
+                    writeRow(w, tick + 1, vehicleId, cell, dirIdx, width);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeRow(Writer w, int tick, int vehicleId, int cell, int dirIdx, int width) throws IOException {
+        w.write(Integer.toString(tick));
+        w.write(',');
+        w.write(Integer.toString(vehicleId));
+        w.write(',');
+        w.write(Integer.toString(cell % width));
+        w.write(',');
+        w.write(Integer.toString(cell / width));
+        w.write(',');
+        w.write(Direction.fromIndex(dirIdx).name().charAt(0));
+        w.write(System.lineSeparator());
+    }
+}
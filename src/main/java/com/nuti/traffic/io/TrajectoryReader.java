@@ -0,0 +1,219 @@
+package com.nuti.traffic.io;
+
+import com.nuti.traffic.model.Direction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Replays a TrajectoryWriter file in tick order. Lanes may hold the same vehicle at different ticks (vehicles are
+// re-partitioned between workers), so the lane streams are merged tick by tick rather than read file-sequentially.
+// Within a tick moves are visited by vehicle id, so the replay does not depend on the engine's lane layout.
+public final class TrajectoryReader {
+
+    private static final int HEADER_BYTES = 28;
+
+    private final Path path;
+    private final int width;
+    private final int height;
+    private final int vehicles;
+    private final int ticks;
+    private final int[] initialCell;
+    private final int[] initialDir;
+    private final List<List<long[]>> laneChunks = new ArrayList<>();
+
+    public interface MoveVisitor {
+        // The vehicle moved during tick into cell, now heading dirIdx.
+        void move(int tick, int vehicleId, int cell, int dirIdx);
+    }
+
+    public TrajectoryReader(Path path) {
+        this.path = path;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = read(ch, 0, HEADER_BYTES);
+            if (header.getInt() != TrajectoryWriter.MAGIC) {
+                throw new IllegalArgumentException("Not a trajectory file: " + path);
+            }
+            int version = header.getInt();
+            if (version != TrajectoryWriter.VERSION) {
+                throw new IllegalArgumentException("Unsupported trajectory version " + version + ": " + path);
+            }
+            this.width = header.getInt();
+            this.height = header.getInt();
+            this.vehicles = header.getInt();
+            this.ticks = header.getInt();
+            int initialBytes = header.getInt();
+
+            this.initialCell = new int[vehicles];
+            this.initialDir = new int[vehicles];
+            ByteBuffer initial = read(ch, HEADER_BYTES, initialBytes);
+            int cell = 0;
+            for (int id = 0; id < vehicles; id++) {
+                long v = getVarint(initial);
+                cell += (int) unzigzag(v >>> 2);
+                initialCell[id] = cell;
+                initialDir[id] = (int) (v & 3);
+            }
+
+            long pos = HEADER_BYTES + (long) initialBytes;
+            long size = ch.size();
+            while (pos < size) {
+                ByteBuffer chunkHeader = read(ch, pos, 8);
+                int lane = chunkHeader.getInt();
+                int length = chunkHeader.getInt();
+                if (lane < 0 || length < 0 || pos + 8 + length > size) {
+                    throw new IllegalArgumentException("Corrupt trajectory chunk at offset " + pos + ": " + path);
+                }
+                while (laneChunks.size() <= lane) {
+                    laneChunks.add(new ArrayList<>());
+                }
+                laneChunks.get(lane).add(new long[] { pos + 8, length });
+                pos += 8 + length;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read trajectories: " + path, e);
+        }
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int vehicles() {
+        return vehicles;
+    }
+
+    public int ticks() {
+        return ticks;
+    }
+
+    public int initialCell(int vehicleId) {
+        return initialCell[vehicleId];
+    }
+
+    public int initialDir(int vehicleId) {
+        return initialDir[vehicleId];
+    }
+
+    public void replay(MoveVisitor visitor) {
+        int[] step = new int[4];
+        for (Direction d : Direction.values()) {
+            step[d.index()] = d.dx() + d.dy() * width;
+        }
+        int[] cells = initialCell.clone();
+        int[] dirs = new int[vehicles];
+        int[] moved = new int[vehicles];
+
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            LaneCursor[] cursors = new LaneCursor[laneChunks.size()];
+            for (int l = 0; l < cursors.length; l++) {
+                cursors[l] = new LaneCursor(ch, laneChunks.get(l));
+            }
+            while (true) {
+                int tick = Integer.MAX_VALUE;
+                for (LaneCursor c : cursors) {
+                    tick = Math.min(tick, c.nextTick);
+                }
+                if (tick == Integer.MAX_VALUE) {
+                    return;
+                }
+                int count = 0;
+                for (LaneCursor c : cursors) {
+                    if (c.nextTick == tick) {
+                        count = c.replayTick(cells, dirs, step, moved, count);
+                    }
+                }
+                Arrays.sort(moved, 0, count);
+                for (int k = 0; k < count; k++) {
+                    int id = moved[k];
+                    visitor.move(tick, id, cells[id], dirs[id]);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read trajectories: " + path, e);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel ch, long pos, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buf.flip();
+    }
+
+    private static long getVarint(ByteBuffer buf) {
+        long v = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buf.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+            shift += 7;
+        }
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static final class LaneCursor {
+        private final FileChannel ch;
+        private final List<long[]> chunks;
+        private int nextChunk;
+        private ByteBuffer buf = ByteBuffer.allocate(0);
+        private int nextTick = -1;
+
+        private LaneCursor(FileChannel ch, List<long[]> chunks) throws IOException {
+            this.ch = ch;
+            this.chunks = chunks;
+            nextTick = hasMore() ? -1 + (int) (getVarint(buf) >>> 1) : Integer.MAX_VALUE;
+        }
+
+        // Applies the moves of nextTick, appending the moved ids at moved[count..], and stops at the next tick marker
+        // (or the end of the lane). Returns the new count.
+        private int replayTick(int[] cells, int[] dirs, int[] step, int[] moved, int count) throws IOException {
+            int tick = nextTick;
+            int id = 0;
+            while (hasMore()) {
+                long v = getVarint(buf);
+                if ((v & 1) != 0) {
+                    nextTick = tick + (int) (v >>> 1);
+                    return count;
+                }
+                v >>>= 1;
+                id += (int) unzigzag(v >>> 2);
+                int dir = (int) (v & 3);
+                cells[id] += step[dir];
+                dirs[id] = dir;
+                moved[count++] = id;
+            }
+            nextTick = Integer.MAX_VALUE;
+            return count;
+        }
+
+        private boolean hasMore() throws IOException {
+            while (!buf.hasRemaining()) {
+                if (nextChunk == chunks.size()) {
+                    return false;
+                }
+                long[] chunk = chunks.get(nextChunk++);
+                buf = read(ch, chunk[0], (int) chunk[1]);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.nuti.traffic.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Per-vehicle moves only: a vehicle that stays put writes nothing, and a move is stored as (tick, vehicleId, new
+// direction) because the new cell is always the neighbor in that direction. Each worker appends to its own Lane;
+// full lane buffers are handed to a background thread that writes them as chunks, so lanes never share state.
+public final class TrajectoryWriter implements AutoCloseable {
+
+    public static final String EXTENSION = ".traj";
+
+    static final int MAGIC = 0x4A415254;
+    static final int VERSION = 1;
+
+    private static final int CHUNK_BYTES = 1 << 16;
+    private static final int MAX_ENTRY_BYTES = 16;
+    private static final int QUEUE_CAPACITY = 16;
+    private static final long OFFER_WAIT_NS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final Chunk END = new Chunk(-1, new byte[0], 0);
+
+    private final Path path;
+    private final DataOutputStream out;
+    private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+
+    private final Object lanesLock = new Object();
+    private Lane[] lanes = new Lane[0];
+
+    private volatile Throwable failure;
+    private boolean finished;
+
+    // initialCell/initialDir are indexed by vehicleId; cells are row-major indices into a width x height grid.
+    public TrajectoryWriter(Path path, int width, int height, int ticks, int[] initialCell, int[] initialDir) {
+        if (initialCell.length != initialDir.length) {
+            throw new IllegalArgumentException("initialCell and initialDir length mismatch");
+        }
+        this.path = path;
+        try {
+            Path parent = path.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), CHUNK_BYTES));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(initialCell.length);
+            out.writeInt(ticks);
+
+            byte[] initial = new byte[initialCell.length * 6];
+            int len = 0;
+            int prevCell = 0;
+            for (int id = 0; id < initialCell.length; id++) {
+                len = putVarint(initial, len, (zigzag(initialCell[id] - prevCell) << 2) | initialDir[id]);
+                prevCell = initialCell[id];
+            }
+            out.writeInt(len);
+            out.write(initial, 0, len);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write trajectories: " + path, e);
+        }
+        this.writer = new Thread(this::drain, "traffic-trajectory-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public static boolean isTrajectory(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().endsWith(EXTENSION);
+    }
+
+    // Lanes are single-writer: one per worker (or per thread), never shared between threads that run concurrently.
+    public Lane newLane() {
+        synchronized (lanesLock) {
+            Lane lane = new Lane(lanes.length);
+            Lane[] grown = new Lane[lanes.length + 1];
+            System.arraycopy(lanes, 0, grown, 0, lanes.length);
+            grown[lanes.length] = lane;
+            lanes = grown;
+            return lane;
+        }
+    }
+
+    // Must only be called once the workers that own the lanes are done.
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        Lane[] all;
+        synchronized (lanesLock) {
+            all = lanes;
+        }
+        try {
+            for (Lane lane : all) {
+                lane.flush();
+            }
+        } finally {
+            boolean interrupted = false;
+            while (writer.isAlive()) {
+                try {
+                    if (filled.offer(END, OFFER_WAIT_NS, TimeUnit.NANOSECONDS) || failure != null) {
+                        writer.join();
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        checkFailure();
+    }
+
+    private void submit(Chunk chunk) {
+        try {
+            while (!filled.offer(chunk, OFFER_WAIT_NS, TimeUnit.NANOSECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing trajectories: " + path, e);
+        }
+    }
+
+    private byte[] takeBuffer() {
+        byte[] buf = free.poll();
+        return (buf != null) ? buf : new byte[CHUNK_BYTES];
+    }
+
+    private void checkFailure() {
+        Throwable t = failure;
+        if (t != null) {
+            throw new RuntimeException("Failed to write trajectories: " + path, t);
+        }
+    }
+
+    private void drain() {
+        try (DataOutputStream o = out) {
+            while (true) {
+                Chunk chunk = filled.take();
+                if (chunk == END) {
+                    break;
+                }
+                o.writeInt(chunk.lane);
+                o.writeInt(chunk.length);
+                o.write(chunk.bytes, 0, chunk.length);
+                free.offer(chunk.bytes);
+            }
+        } catch (Throwable e) {
+            failure = e;
+        }
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static int putVarint(byte[] buf, int pos, long v) {
+        while ((v & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+        return pos;
+    }
+
+    // Entry stream: varint((tickDelta << 1) | 1) opens a tick and resets the id base; varint(((zigzag(idDelta) << 2)
+    // | dir) << 1) is a move. Chunks of one lane concatenate into one stream, so a lane can be flushed at any entry.
+    public final class Lane {
+        private final int index;
+        private byte[] buf = takeBuffer();
+        private int len;
+        private int lastTick = -1;
+        private int prevId;
+
+        private Lane(int index) {
+            this.index = index;
+        }
+
+        public void record(int tick, int vehicleId, int dirIdx) {
+            if (len > CHUNK_BYTES - MAX_ENTRY_BYTES) {
+                flush();
+            }
+            if (tick != lastTick) {
+                len = putVarint(buf, len, ((long) (tick - lastTick) << 1) | 1);
+                lastTick = tick;
+                prevId = 0;
+            }
+            len = putVarint(buf, len, ((zigzag(vehicleId - prevId) << 2) | dirIdx) << 1);
+            prevId = vehicleId;
+        }
+
+        private void flush() {
+            if (len == 0) {
+                return;
+            }
+            submit(new Chunk(index, buf, len));
+            buf = takeBuffer();
+            len = 0;
+        }
+    }
+
+    private record Chunk(int lane, byte[] bytes, int length) {
+    }
+}
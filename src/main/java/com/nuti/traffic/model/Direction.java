@@ -6,6 +6,9 @@ public enum Direction {
     EAST(1, 0, 2),
     WEST(-1, 0, 3);
 
+    private static final int[] LEFT_TURN = { 3, 2, 0, 1 };
+    private static final int[] RIGHT_TURN = { 2, 3, 1, 0 };
+
     private final int dx;
     private final int dy;
     private final int index;
@@ -45,6 +48,18 @@ public enum Direction {
         };
     }
 
+    public static boolean isHorizontalIndex(int index) {
+        return index >= EAST.index;
+    }
+
+    public static int leftTurnIndex(int index) {
+        return LEFT_TURN[index];
+    }
+
+    public static int rightTurnIndex(int index) {
+        return RIGHT_TURN[index];
+    }
+
     public static Direction fromIndex(int index) {
         return switch (index) {
             case 0 -> NORTH;
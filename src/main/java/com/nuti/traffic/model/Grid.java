@@ -10,6 +10,13 @@ public final class Grid {
     private final int[] intersectionIndexByCell;
     private final int[] intersectionCellIdx;
 
+    // Transitable cells get dense "node" ids in row-major order; simulation state is indexed by node.
+    private final int[] nodeOfCell;
+    private final int[] cellOfNode;
+    private final int[] rowNodeStart;
+    private final int[] nodeNeighbors;
+    private final int[] intersectionIndexByNode;
+
     public Grid(int width, int height, CellType[] cells, int[] intersectionIndexByCell, int[] intersectionCellIdx) {
         if (width <= 0 || height <= 0) {
             throw new IllegalArgumentException("Invalid grid dimensions");
@@ -25,6 +32,46 @@ public final class Grid {
         this.cells = Arrays.copyOf(cells, cells.length);
         this.intersectionIndexByCell = Arrays.copyOf(intersectionIndexByCell, intersectionIndexByCell.length);
         this.intersectionCellIdx = Arrays.copyOf(intersectionCellIdx, intersectionCellIdx.length);
+
+        this.nodeOfCell = new int[cells.length];
+        this.rowNodeStart = new int[height + 1];
+        int nodes = 0;
+        for (int y = 0; y < height; y++) {
+            rowNodeStart[y] = nodes;
+            for (int x = 0; x < width; x++) {
+                int idx = y * width + x;
+                nodeOfCell[idx] = isTransitableType(this.cells[idx]) ? nodes++ : -1;
+            }
+        }
+        rowNodeStart[height] = nodes;
+
+        this.cellOfNode = new int[nodes];
+        this.intersectionIndexByNode = new int[nodes];
+        for (int idx = 0; idx < cells.length; idx++) {
+            int node = nodeOfCell[idx];
+            if (node >= 0) {
+                cellOfNode[node] = idx;
+                intersectionIndexByNode[node] = this.intersectionIndexByCell[idx];
+            }
+        }
+        this.nodeNeighbors = buildNodeNeighbors();
+    }
+
+    private int[] buildNodeNeighbors() {
+        int[] out = new int[cellOfNode.length * 4];
+        Arrays.fill(out, -1);
+        for (int node = 0; node < cellOfNode.length; node++) {
+            int x = x(cellOfNode[node]);
+            int y = y(cellOfNode[node]);
+            for (Direction d : Direction.values()) {
+                int nx = x + d.dx();
+                int ny = y + d.dy();
+                if (inBounds(nx, ny)) {
+                    out[node * 4 + d.index()] = nodeOfCell[idx(nx, ny)];
+                }
+            }
+        }
+        return out;
     }
 
     public int width() {
@@ -64,8 +111,7 @@ public final class Grid {
     }
 
     public boolean isTransitable(int idx) {
-        CellType t = cells[idx];
-        return t == CellType.ROAD || t == CellType.INTERSECTION;
+        return nodeOfCell[idx] >= 0;
     }
 
     public int intersectionCount() {
@@ -79,4 +125,36 @@ public final class Grid {
     public int intersectionCellIdx(int intersectionIndex) {
         return intersectionCellIdx[intersectionIndex];
     }
+
+    public int nodeCount() {
+        return cellOfNode.length;
+    }
+
+    public int nodeOfCell(int cellIdx) {
+        return nodeOfCell[cellIdx];
+    }
+
+    public int cellOfNode(int node) {
+        return cellOfNode[node];
+    }
+
+    public int rowNodeStart(int y) {
+        return rowNodeStart[y];
+    }
+
+    public int nodeNeighbor(int node, int dirIdx) {
+        return nodeNeighbors[node * 4 + dirIdx];
+    }
+
+    public boolean isIntersectionNode(int node) {
+        return intersectionIndexByNode[node] >= 0;
+    }
+
+    public int intersectionIndexAtNode(int node) {
+        return intersectionIndexByNode[node];
+    }
+
+    private static boolean isTransitableType(CellType t) {
+        return t == CellType.ROAD || t == CellType.INTERSECTION;
+    }
 }
@@ -0,0 +1,95 @@
+package com.nuti.traffic.model;
+
+import java.util.Arrays;
+
+// Stateless light schedules: intersection i shows entry (tick - offset[i]) mod cycle of its plan's per-tick mask table.
+public final class LightProgram {
+
+    public static final byte ALLOW_NONE = 0;
+    public static final byte ALLOW_H = 1;
+    public static final byte ALLOW_V = 2;
+
+    private final int[] planOf;
+    private final int[] offset;
+    private final int[] planBase;
+    private final int[] cycle;
+    private final byte[] table;
+    private final int maxCycle;
+
+    public LightProgram(byte[][] planMasks, int[] planOf, int[] offset) {
+        if (planOf.length != offset.length) {
+            throw new IllegalArgumentException("planOf/offset length mismatch");
+        }
+        this.planOf = Arrays.copyOf(planOf, planOf.length);
+        this.offset = Arrays.copyOf(offset, offset.length);
+        this.planBase = new int[planMasks.length];
+        this.cycle = new int[planMasks.length];
+
+        int total = 0;
+        int max = 1;
+        for (int p = 0; p < planMasks.length; p++) {
+            if (planMasks[p].length == 0) {
+                throw new IllegalArgumentException("Plan " + p + " has an empty cycle");
+            }
+            planBase[p] = total;
+            cycle[p] = planMasks[p].length;
+            total += planMasks[p].length;
+            max = Math.max(max, planMasks[p].length);
+        }
+        this.maxCycle = max;
+        this.table = new byte[total];
+        for (int p = 0; p < planMasks.length; p++) {
+            System.arraycopy(planMasks[p], 0, table, planBase[p], planMasks[p].length);
+        }
+        for (int p : planOf) {
+            if (p < 0 || p >= planMasks.length) {
+                throw new IllegalArgumentException("Unknown plan index " + p);
+            }
+        }
+    }
+
+    // Every intersection alternates H/V every `period` ticks, starting with H at tick 0.
+    public static LightProgram uniform(int intersectionCount, int period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be > 0");
+        }
+        byte[] plan = new byte[2 * period];
+        Arrays.fill(plan, 0, period, ALLOW_H);
+        Arrays.fill(plan, period, 2 * period, ALLOW_V);
+        return new LightProgram(new byte[][] { plan }, new int[intersectionCount], new int[intersectionCount]);
+    }
+
+    public int intersectionCount() {
+        return planOf.length;
+    }
+
+    public int maxCycle() {
+        return maxCycle;
+    }
+
+    public int mask(int intersection, int tick) {
+        int p = planOf[intersection];
+        int t = Math.floorMod(tick - offset[intersection], cycle[p]);
+        return table[planBase[p] + t];
+    }
+
+    public boolean allows(int intersection, int tick, int dirIdx) {
+        return maskAllows(mask(intersection, tick), dirIdx);
+    }
+
+    public static boolean maskAllows(int mask, int dirIdx) {
+        int axis = Direction.isHorizontalIndex(dirIdx) ? ALLOW_H : ALLOW_V;
+        return (mask & axis) != 0;
+    }
+
+    // First tick after `tick` at which the light lets dirIdx through, or -1 if its plan never does.
+    public int nextAllowTick(int intersection, int tick, int dirIdx) {
+        int c = cycle[planOf[intersection]];
+        for (int dt = 1; dt <= c; dt++) {
+            if (allows(intersection, tick + dt, dirIdx)) {
+                return tick + dt;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,6 +0,0 @@
-package com.nuti.traffic.model;
-
-public enum TrafficLightState {
-    H_GREEN,
-    V_GREEN
-}
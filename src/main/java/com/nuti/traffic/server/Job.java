@@ -0,0 +1,146 @@
+package com.nuti.traffic.server;
+
+import com.nuti.traffic.io.TickSink;
+import com.nuti.traffic.sim.SimulationConfig;
+import com.nuti.traffic.sim.SimulationResult;
+
+import java.util.Arrays;
+
+// One submitted run. The engine thread appends ticks through accept(); HTTP threads read under the job's monitor and
+// tick streams wait on it for new rows.
+final class Job implements TickSink {
+
+    enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    record Ticks(String lines, int next, boolean complete) {
+    }
+
+    private static final int MAX_TICKS_PER_READ = 4096;
+
+    private final long id;
+    private final SimulationConfig config;
+    private final long submittedMs = System.currentTimeMillis();
+
+    private Status status = Status.QUEUED;
+    private int[] moved = new int[64];
+    private int[] stopped = new int[64];
+    private int ticksDone;
+    private long startedMs;
+    private long finishedMs;
+    private SimulationResult result;
+    private String error;
+
+    Job(long id, SimulationConfig config) {
+        this.id = id;
+        this.config = config;
+    }
+
+    long id() {
+        return id;
+    }
+
+    SimulationConfig config() {
+        return config;
+    }
+
+    synchronized Status status() {
+        return status;
+    }
+
+    synchronized boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+
+    synchronized void started() {
+        status = Status.RUNNING;
+        startedMs = System.currentTimeMillis();
+    }
+
+    synchronized void finished(SimulationResult res) {
+        result = res;
+        status = Status.DONE;
+        finishedMs = System.currentTimeMillis();
+        notifyAll();
+    }
+
+    synchronized void failed(Throwable e) {
+        error = (e.getMessage() != null) ? e.getMessage() : e.toString();
+        status = Status.FAILED;
+        finishedMs = System.currentTimeMillis();
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void accept(int tick, int movedCount, int stoppedCount) {
+        if (tick >= moved.length) {
+            int capacity = Math.max(tick + 1, (int) Math.min(Integer.MAX_VALUE - 8, 2L * moved.length));
+            moved = Arrays.copyOf(moved, capacity);
+            stopped = Arrays.copyOf(stopped, capacity);
+        }
+        moved[tick] = movedCount;
+        stopped[tick] = stoppedCount;
+        ticksDone = tick + 1;
+        notifyAll();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    // NDJSON rows from tick `from` on, waiting up to timeoutMs if there are none yet; complete once the job has
+    // finished and every tick has been handed out.
+    synchronized Ticks ticksFrom(int from, long timeoutMs) throws InterruptedException {
+        if (from >= ticksDone && !isFinished()) {
+            wait(timeoutMs);
+        }
+        int to = Math.min(ticksDone, from + MAX_TICKS_PER_READ);
+        StringBuilder b = new StringBuilder();
+        for (int t = from; t < to; t++) {
+            b.append("{\"tick\":").append(t)
+                    .append(",\"moved\":").append(moved[t])
+                    .append(",\"stopped\":").append(stopped[t])
+                    .append("}\n");
+        }
+        int next = Math.max(from, to);
+        return new Ticks(b.toString(), next, isFinished() && next >= ticksDone);
+    }
+
+    synchronized String summaryJson() {
+        return "{\"id\":" + id + ",\"status\":" + Json.quote(status.name()) + ",\"ticksDone\":" + ticksDone + "}";
+    }
+
+    synchronized String toJson() {
+        StringBuilder b = new StringBuilder();
+        b.append("{\"id\":").append(id)
+                .append(",\"status\":").append(Json.quote(status.name()))
+                .append(",\"ticksDone\":").append(ticksDone)
+                .append(",\"config\":{")
+                .append("\"grid\":").append(Json.quote(config.gridPath().toString()))
+                .append(",\"vehicles\":").append(config.vehicles())
+                .append(",\"ticks\":").append(config.ticks())
+                .append(",\"seed\":").append(config.seed())
+                .append(",\"turnProb\":").append(Json.number(config.turnProb()))
+                .append(",\"period\":").append(config.lightPeriod())
+                .append(",\"mode\":").append(Json.quote(config.mode().name()))
+                .append(",\"threads\":").append(config.threads())
+                .append(",\"lights\":").append(Json.quote((config.lightsFile() != null) ? config.lightsFile().toString() : null))
+                .append('}')
+                .append(",\"queuedMs\":").append((startedMs > 0 ? startedMs : System.currentTimeMillis()) - submittedMs);
+        if (finishedMs > 0) {
+            b.append(",\"runMs\":").append(finishedMs - startedMs);
+        }
+        if (result != null) {
+            b.append(",\"result\":{")
+                    .append("\"mode\":").append(Json.quote(result.mode().name()))
+                    .append(",\"threads\":").append(result.threads())
+                    .append(",\"timeMs\":").append(result.timeMs())
+                    .append(",\"avgFlow\":").append(Json.number(result.avgFlow()))
+                    .append(",\"avgStopped\":").append(Json.number(result.avgStopped()))
+                    .append('}');
+        }
+        if (error != null) {
+            b.append(",\"error\":").append(Json.quote(error));
+        }
+        return b.append('}').toString();
+    }
+}
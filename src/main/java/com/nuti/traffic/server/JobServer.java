@@ -0,0 +1,513 @@
+package com.nuti.traffic.server;
+
+import com.nuti.traffic.grid.GridLoader;
+import com.nuti.traffic.model.Grid;
+import com.nuti.traffic.sim.AutoEngine;
+import com.nuti.traffic.sim.EngineDecision;
+import com.nuti.traffic.sim.ForkJoinEngine;
+import com.nuti.traffic.sim.ParallelEngine;
+import com.nuti.traffic.sim.RunMode;
+import com.nuti.traffic.sim.SequentialEngine;
+import com.nuti.traffic.sim.SimulationConfig;
+import com.nuti.traffic.sim.SimulationResult;
+import com.nuti.traffic.sim.SimulationSession;
+import com.nuti.traffic.sim.SpatialEngine;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Local HTTP/JSON front end for the engines, so many short runs share one warm JVM:
+//   POST /jobs               submit a run (flat JSON object, see README), 202 with the job id; 503 if the queue is full
+//   GET  /jobs               id, status and progress of the retained jobs
+//   GET  /jobs/{id}          status, config, timings and, once done, the result
+//   GET  /jobs/{id}/ticks    NDJSON tick metrics (?from=k), streamed live until the run ends
+// Jobs run on a fixed pool of workers behind a bounded queue. Parsed grids stay resident (reloaded if the file
+// changes) and each worker borrows a SimulationSession for its grid, keeping buffers and engine thread pools warm.
+public final class JobServer implements AutoCloseable {
+
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final long STREAM_POLL_MS = 1000;
+
+    private final HttpServer http;
+    private final ExecutorService httpPool;
+    private final ThreadPoolExecutor jobPool;
+    private final int keepJobs;
+
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<Long, Job> jobs = new LinkedHashMap<>();
+    private final Map<String, GridEntry> grids = new HashMap<>();
+
+    private final SequentialEngine sequential = new SequentialEngine();
+    private final ParallelEngine parallel = new ParallelEngine();
+    private final SpatialEngine spatial = new SpatialEngine();
+    private final ForkJoinEngine forkJoin = new ForkJoinEngine();
+    private final AutoEngine auto;
+
+    public JobServer(InetSocketAddress address, int workers, int queueCapacity, int keepJobs, Path autoCache) {
+        if (workers <= 0 || queueCapacity <= 0 || keepJobs <= 0) {
+            throw new IllegalArgumentException("workers, queueCapacity and keepJobs must be > 0");
+        }
+        this.keepJobs = keepJobs;
+        this.auto = new AutoEngine(autoCache);
+        this.jobPool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), daemon("traffic-job-"));
+        this.httpPool = Executors.newCachedThreadPool(daemon("traffic-http-"));
+        try {
+            this.http = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            jobPool.shutdownNow();
+            httpPool.shutdownNow();
+            throw new RuntimeException("Failed to bind job server to " + address, e);
+        }
+        http.createContext("/jobs", this::handle);
+        http.setExecutor(httpPool);
+    }
+
+    public void start() {
+        http.start();
+        System.out.println("[" + Instant.now() + "] SERVE listening on http://" + http.getAddress().getHostString() + ":" + port()
+                + " workers=" + jobPool.getCorePoolSize() + " queue=" + jobPool.getQueue().remainingCapacity());
+    }
+
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+        jobPool.shutdownNow();
+        httpPool.shutdownNow();
+        synchronized (grids) {
+            for (GridEntry entry : grids.values()) {
+                entry.retire();
+            }
+            grids.clear();
+        }
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            String[] parts = ex.getRequestURI().getPath().split("/");
+            String method = ex.getRequestMethod();
+            if (parts.length == 2 && method.equals("POST")) {
+                submit(ex);
+            } else if (parts.length == 2 && method.equals("GET")) {
+                send(ex, 200, listJson());
+            } else if (parts.length == 3 && method.equals("GET")) {
+                Job job = job(parts[2]);
+                if (job == null) {
+                    send(ex, 404, errorJson("Unknown job: " + parts[2]));
+                } else {
+                    send(ex, 200, job.toJson());
+                }
+            } else if (parts.length == 4 && parts[3].equals("ticks") && method.equals("GET")) {
+                Job job = job(parts[2]);
+                if (job == null) {
+                    send(ex, 404, errorJson("Unknown job: " + parts[2]));
+                } else {
+                    streamTicks(ex, job, fromParam(ex.getRequestURI().getRawQuery()));
+                }
+            } else {
+                send(ex, 404, errorJson("No route for " + method + " " + ex.getRequestURI().getPath()));
+            }
+        } catch (IllegalArgumentException e) {
+            send(ex, 400, errorJson(e.getMessage()));
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void submit(HttpExchange ex) throws IOException {
+        SimulationConfig config = configFrom(Json.parseObject(readBody(ex)));
+        Job job = new Job(nextId.incrementAndGet(), config);
+        synchronized (jobs) {
+            jobs.put(job.id(), job);
+            evictFinished();
+        }
+        try {
+            jobPool.execute(() -> runJob(job));
+        } catch (RejectedExecutionException e) {
+            synchronized (jobs) {
+                jobs.remove(job.id());
+            }
+            send(ex, 503, errorJson("Job queue is full"));
+            return;
+        }
+        send(ex, 202, job.summaryJson());
+    }
+
+    private void runJob(Job job) {
+        job.started();
+        SimulationConfig config = job.config();
+        GridEntry entry = null;
+        SimulationSession session = null;
+        try {
+            entry = gridFor(config);
+            session = entry.borrow();
+            EngineDecision decision = null;
+            if (config.mode() == RunMode.AUTO) {
+                // Probes run before the listener is attached, so only the chosen run reports ticks.
+                synchronized (auto) {
+                    decision = auto.decide(config, session);
+                }
+                config = config.withMode(decision.mode(), decision.threads());
+            }
+            session.setTickListener(job);
+            SimulationResult res = switch (config.mode()) {
+                case SEQUENTIAL -> sequential.run(config, session);
+                case PARALLEL -> parallel.run(config, session);
+                case SPATIAL -> spatial.run(config, session);
+                case FORKJOIN -> forkJoin.run(config, session);
+                case AUTO -> throw new IllegalStateException("AUTO is not a concrete engine");
+            };
+            job.finished((decision != null) ? res.withDecision(decision) : res);
+        } catch (Throwable e) {
+            job.failed(e);
+        } finally {
+            if (session != null) {
+                session.setTickListener(null);
+                entry.release(session);
+            }
+        }
+    }
+
+    private void streamTicks(HttpExchange ex, Job job, int from) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        ex.sendResponseHeaders(200, 0);
+        OutputStream out = ex.getResponseBody();
+        int next = from;
+        try {
+            while (true) {
+                Job.Ticks ticks = job.ticksFrom(next, STREAM_POLL_MS);
+                if (!ticks.lines().isEmpty()) {
+                    out.write(ticks.lines().getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+                next = ticks.next();
+                if (ticks.complete()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Fields mirror the CLI options; grid, vehicles, ticks and seed are required. Per-run files (ticks CSV,
+    // trajectories, checkpoints) are not available here: results come back through the API.
+    static SimulationConfig configFrom(Map<String, Object> body) {
+        for (String key : body.keySet()) {
+            if (!List.of("grid", "vehicles", "ticks", "seed", "turnProb", "period", "mode", "threads", "lights", "reorderEvery", "sleep").contains(key)) {
+                throw new IllegalArgumentException("Unknown job field: " + key);
+            }
+        }
+        // Absolute paths, so every spelling of a file shares one resident grid and its sessions.
+        Path grid = Path.of(stringField(body, "grid", null)).toAbsolutePath().normalize();
+        if (!Files.isRegularFile(grid)) {
+            throw new IllegalArgumentException("Grid file not found: " + grid);
+        }
+        String lightsName = stringField(body, "lights", "");
+        Path lights = lightsName.isEmpty() ? null : Path.of(lightsName).toAbsolutePath().normalize();
+        if (lights != null && !Files.isRegularFile(lights)) {
+            throw new IllegalArgumentException("Lights file not found: " + lights);
+        }
+        int vehicles = intField(body, "vehicles", null);
+        int ticks = intField(body, "ticks", null);
+        long seed = longField(body, "seed", null);
+        double turnProb = doubleField(body, "turnProb", 0.2);
+        int period = intField(body, "period", 10);
+        RunMode mode = RunMode.parse(stringField(body, "mode", "seq"));
+        int threads = intField(body, "threads", 1);
+        int reorderEvery = intField(body, "reorderEvery", 0);
+        boolean sleep = booleanField(body, "sleep", false);
+
+        if (vehicles < 0) {
+            throw new IllegalArgumentException("vehicles must be >= 0");
+        }
+        if (ticks <= 0) {
+            throw new IllegalArgumentException("ticks must be > 0");
+        }
+        if (turnProb < 0.0 || turnProb > 1.0) {
+            throw new IllegalArgumentException("turnProb must be in [0,1]");
+        }
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be > 0");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be > 0");
+        }
+        if (reorderEvery < 0) {
+            throw new IllegalArgumentException("reorderEvery must be >= 0");
+        }
+        if (reorderEvery > 0 && (mode == RunMode.SPATIAL || mode == RunMode.AUTO)) {
+            throw new IllegalArgumentException("reorderEvery is only supported with mode seq|par|fj");
+        }
+        if (sleep && mode != RunMode.SEQUENTIAL) {
+            throw new IllegalArgumentException("sleep is only supported with mode seq");
+        }
+        return new SimulationConfig(grid, vehicles, ticks, seed, turnProb, period, mode, threads, null, false)
+                .withReorderInterval(reorderEvery)
+                .withSleepBlocked(sleep)
+                .withLightsFile(lights);
+    }
+
+    private static String stringField(Map<String, Object> body, String key, String def) {
+        Object v = field(body, key, def);
+        if (!(v instanceof String s)) {
+            throw new IllegalArgumentException(key + " must be a string");
+        }
+        return s;
+    }
+
+    private static long longField(Map<String, Object> body, String key, Long def) {
+        Object v = field(body, key, def);
+        if (!(v instanceof Long l)) {
+            throw new IllegalArgumentException(key + " must be an integer");
+        }
+        return l;
+    }
+
+    private static int intField(Map<String, Object> body, String key, Integer def) {
+        long v = longField(body, key, (def != null) ? Long.valueOf(def) : null);
+        if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(key + " is out of range");
+        }
+        return (int) v;
+    }
+
+    private static double doubleField(Map<String, Object> body, String key, double def) {
+        Object v = field(body, key, def);
+        if (!(v instanceof Number n)) {
+            throw new IllegalArgumentException(key + " must be a number");
+        }
+        return n.doubleValue();
+    }
+
+    private static boolean booleanField(Map<String, Object> body, String key, boolean def) {
+        Object v = field(body, key, def);
+        if (!(v instanceof Boolean b)) {
+            throw new IllegalArgumentException(key + " must be true or false");
+        }
+        return b;
+    }
+
+    private static Object field(Map<String, Object> body, String key, Object def) {
+        Object v = body.get(key);
+        if (v != null) {
+            return v;
+        }
+        if (def == null) {
+            throw new IllegalArgumentException("Missing job field: " + key);
+        }
+        return def;
+    }
+
+    private static int fromParam(String query) {
+        if (query == null) {
+            return 0;
+        }
+        for (String kv : query.split("&")) {
+            if (kv.startsWith("from=")) {
+                try {
+                    int from = Integer.parseInt(kv.substring(5));
+                    if (from >= 0) {
+                        return from;
+                    }
+                } catch (NumberFormatException e) {
+                    // fall through to the error below
+                }
+                throw new IllegalArgumentException("Invalid from: " + kv.substring(5));
+            }
+        }
+        return 0;
+    }
+
+    private Job job(String id) {
+        try {
+            synchronized (jobs) {
+                return jobs.get(Long.parseLong(id));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String listJson() {
+        List<Job> snapshot;
+        synchronized (jobs) {
+            snapshot = new ArrayList<>(jobs.values());
+        }
+        StringBuilder b = new StringBuilder("[");
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (i > 0) {
+                b.append(',');
+            }
+            b.append(snapshot.get(i).summaryJson());
+        }
+        return b.append(']').toString();
+    }
+
+    // Oldest finished jobs go first; queued and running jobs are bounded by the pool and queue sizes.
+    private void evictFinished() {
+        Iterator<Job> it = jobs.values().iterator();
+        while (jobs.size() > keepJobs && it.hasNext()) {
+            if (it.next().isFinished()) {
+                it.remove();
+            }
+        }
+    }
+
+    private GridEntry gridFor(SimulationConfig config) {
+        Path path = config.gridPath();
+        String key = path.toString();
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read grid: " + path, e);
+        }
+        GridEntry entry;
+        synchronized (grids) {
+            entry = grids.get(key);
+            if (entry == null || !entry.modified.equals(attrs.lastModifiedTime()) || entry.size != attrs.size()) {
+                if (entry != null) {
+                    entry.retire();
+                }
+                entry = new GridEntry(path, attrs.lastModifiedTime(), attrs.size());
+                grids.put(key, entry);
+            }
+        }
+        // Loaded outside the map lock: jobs on other (resident) grids keep going, jobs on this one wait for it.
+        try {
+            entry.load();
+        } catch (RuntimeException | Error e) {
+            synchronized (grids) {
+                grids.remove(key, entry);
+            }
+            throw e;
+        }
+        return entry;
+    }
+
+    private static String readBody(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String errorJson(String message) {
+        return "{\"error\":" + Json.quote(message) + "}";
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger ids = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + ids.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // A grid (loaded once, by whichever job asks first) plus its idle sessions. Once the file changes the entry is
+    // retired: idle sessions are closed now, borrowed ones when they come back.
+    private static final class GridEntry {
+        private final Path path;
+        private final FutureTask<Grid> grid;
+        private final FileTime modified;
+        private final long size;
+        private final Deque<SimulationSession> idle = new ArrayDeque<>();
+        private boolean retired;
+
+        private GridEntry(Path path, FileTime modified, long size) {
+            this.path = path;
+            this.grid = new FutureTask<>(() -> new GridLoader().load(path));
+            this.modified = modified;
+            this.size = size;
+        }
+
+        // The first caller runs the load; concurrent callers block in get() until it is done.
+        private Grid load() {
+            grid.run();
+            try {
+                return grid.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while loading grid: " + path, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException r) {
+                    throw r;
+                }
+                if (e.getCause() instanceof Error err) {
+                    throw err;
+                }
+                throw new RuntimeException("Failed to load grid: " + path, e.getCause());
+            }
+        }
+
+        private SimulationSession borrow() {
+            Grid loaded = load();
+            synchronized (this) {
+                SimulationSession session = idle.poll();
+                return (session != null) ? session : new SimulationSession(path, loaded);
+            }
+        }
+
+        private synchronized void release(SimulationSession session) {
+            if (retired) {
+                session.close();
+            } else {
+                idle.push(session);
+            }
+        }
+
+        private synchronized void retire() {
+            retired = true;
+            for (SimulationSession session : idle) {
+                session.close();
+            }
+            idle.clear();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.nuti.traffic.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Just enough JSON for the job API: requests are flat objects (string, number, boolean or null values); responses
+// are built by hand with quote/number.
+final class Json {
+
+    private final String s;
+    private int pos;
+
+    private Json(String s) {
+        this.s = s;
+    }
+
+    static Map<String, Object> parseObject(String text) {
+        Json p = new Json(text);
+        p.skipSpace();
+        p.expect('{');
+        Map<String, Object> out = new LinkedHashMap<>();
+        p.skipSpace();
+        if (p.peek() == '}') {
+            p.pos++;
+        } else {
+            while (true) {
+                p.skipSpace();
+                String key = p.string();
+                p.skipSpace();
+                p.expect(':');
+                p.skipSpace();
+                if (out.put(key, p.value()) != null) {
+                    throw new IllegalArgumentException("Duplicate JSON key: " + key);
+                }
+                p.skipSpace();
+                char c = p.next();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw p.error("expected ',' or '}'");
+                }
+            }
+        }
+        p.skipSpace();
+        if (p.pos != p.s.length()) {
+            throw p.error("trailing content");
+        }
+        return out;
+    }
+
+    static String quote(String v) {
+        if (v == null) {
+            return "null";
+        }
+        StringBuilder b = new StringBuilder(v.length() + 2).append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            switch (c) {
+                case '"' -> b.append("\\\"");
+                case '\\' -> b.append("\\\\");
+                case '\n' -> b.append("\\n");
+                case '\r' -> b.append("\\r");
+                case '\t' -> b.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        b.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        b.append(c);
+                    }
+                }
+            }
+        }
+        return b.append('"').toString();
+    }
+
+    static String number(double v) {
+        return Double.isFinite(v) ? Double.toString(v) : "null";
+    }
+
+    private Object value() {
+        char c = peek();
+        if (c == '"') {
+            return string();
+        }
+        if (c == '{' || c == '[') {
+            throw error("nested values are not supported");
+        }
+        if (s.startsWith("true", pos)) {
+            pos += 4;
+            return Boolean.TRUE;
+        }
+        if (s.startsWith("false", pos)) {
+            pos += 5;
+            return Boolean.FALSE;
+        }
+        if (s.startsWith("null", pos)) {
+            pos += 4;
+            return null;
+        }
+        int start = pos;
+        while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) {
+            pos++;
+        }
+        if (start == pos) {
+            throw error("unexpected character");
+        }
+        String num = s.substring(start, pos);
+        try {
+            if (num.indexOf('.') < 0 && num.indexOf('e') < 0 && num.indexOf('E') < 0) {
+                return Long.parseLong(num);
+            }
+            return Double.parseDouble(num);
+        } catch (NumberFormatException e) {
+            throw error("invalid number " + num);
+        }
+    }
+
+    private String string() {
+        expect('"');
+        StringBuilder b = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return b.toString();
+            }
+            if (c != '\\') {
+                b.append(c);
+                continue;
+            }
+            char e = next();
+            switch (e) {
+                case '"', '\\', '/' -> b.append(e);
+                case 'b' -> b.append('\b');
+                case 'f' -> b.append('\f');
+                case 'n' -> b.append('\n');
+                case 'r' -> b.append('\r');
+                case 't' -> b.append('\t');
+                case 'u' -> {
+                    if (pos + 4 > s.length()) {
+                        throw error("truncated escape");
+                    }
+                    try {
+                        b.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("invalid escape");
+                    }
+                    pos += 4;
+                }
+                default -> throw error("invalid escape");
+            }
+        }
+    }
+
+    private void skipSpace() {
+        while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        if (pos >= s.length()) {
+            throw error("unexpected end");
+        }
+        return s.charAt(pos);
+    }
+
+    private char next() {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            pos--;
+            throw error("expected '" + c + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String what) {
+        return new IllegalArgumentException("Invalid JSON at offset " + pos + ": " + what);
+    }
+}
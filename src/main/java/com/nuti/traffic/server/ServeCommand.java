@@ -0,0 +1,58 @@
+package com.nuti.traffic.server;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+
+@Command(
+        name = "serve",
+        mixinStandardHelpOptions = true,
+        description = "Servidor local HTTP/JSON de trabajos de simulacion (JVM, rejillas y motores quedan residentes)."
+)
+public class ServeCommand implements Runnable {
+
+    @Option(names = "--bind", defaultValue = "127.0.0.1", description = "Direccion en la que escucha el servidor")
+    private String bind;
+
+    @Option(names = "--port", defaultValue = "8080", description = "Puerto HTTP (0 = cualquiera libre)")
+    private int port;
+
+    @Option(names = "--workers", defaultValue = "1", description = "Trabajos que corren a la vez")
+    private int workers;
+
+    @Option(names = "--queue", defaultValue = "64", description = "Trabajos en espera como maximo; con la cola llena POST /jobs responde 503")
+    private int queue;
+
+    @Option(names = "--keepJobs", defaultValue = "256", description = "Trabajos terminados que se conservan para consulta (se descartan los mas antiguos)")
+    private int keepJobs;
+
+    @Option(names = "--autoCache", defaultValue = "data/auto_mode.properties", description = "Archivo de decisiones de mode=auto")
+    private Path autoCache;
+
+    @Override
+    public void run() {
+        if (port < 0 || port > 65535) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--port must be in [0,65535]");
+        }
+        if (workers <= 0 || queue <= 0 || keepJobs <= 0) {
+            throw new CommandLine.ParameterException(new CommandLine(this), "--workers, --queue and --keepJobs must be > 0");
+        }
+        JobServer server = new JobServer(new InetSocketAddress(bind, port), workers, queue, keepJobs, autoCache);
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            stopped.countDown();
+        }, "traffic-serve-shutdown"));
+        server.start();
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            server.close();
+        }
+    }
+}
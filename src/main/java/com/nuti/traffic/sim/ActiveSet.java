@@ -0,0 +1,124 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.model.Grid;
+import com.nuti.traffic.model.LightProgram;
+
+import java.util.Arrays;
+
+// Vehicles whose proposal failed for a reason that cannot change by itself are parked on a wake list:
+// blocked by occupancy -> the target node's list (woken when a vehicle leaves that node),
+// blocked by a red light -> the timer-wheel bucket of the tick its light next lets it through. Vehicles facing the
+// grid edge (or a light whose plan never serves their axis) never wake,
+// and vehicles at intersections draw a new turn every tick, so they stay active.
+final class ActiveSet {
+
+    private static final int NONE = -1;
+
+    private final int[] active;
+    private final int[] prevNode;
+    private int activeCount;
+
+    private final int[] waitNext;
+    private final int[] nodeWaitHead;
+    private final int[] wheelHead;
+
+    ActiveSet(int vehicleCount, int nodeCount, int maxLightCycle) {
+        this.active = new int[vehicleCount];
+        this.prevNode = new int[vehicleCount];
+        this.waitNext = new int[vehicleCount];
+        this.nodeWaitHead = new int[nodeCount];
+        this.wheelHead = new int[maxLightCycle + 1];
+        reset();
+    }
+
+    void reset() {
+        for (int i = 0; i < active.length; i++) {
+            active[i] = i;
+        }
+        activeCount = active.length;
+        Arrays.fill(nodeWaitHead, NONE);
+        Arrays.fill(wheelHead, NONE);
+    }
+
+    void wakeDue(int tick) {
+        int b = tick % wheelHead.length;
+        wheelHead[b] = wake(wheelHead[b]);
+    }
+
+    void computeProposals(
+            Grid grid,
+            LightProgram lights,
+            VehicleState vehicles,
+            long[] occ,
+            SimulationConfig config,
+            int tick,
+            int[] propTargetNode,
+            int[] propTargetDir,
+            boolean[] propCanMove
+    ) {
+        int[] nodeArr = vehicles.nodeIdxArray();
+        int[] dirArr = vehicles.dirIdxArray();
+        int[] ids = vehicles.idArray();
+
+        int kept = 0;
+        for (int k = 0; k < activeCount; k++) {
+            int i = active[k];
+            int node = nodeArr[i];
+            int dirIdx = dirArr[i];
+
+            int key = MoveRules.proposeKey(grid, lights, occ, config, tick, ids[i], node, dirIdx);
+            if (key >= 0) {
+                propTargetNode[i] = key / 4;
+                propTargetDir[i] = key % 4;
+                propCanMove[i] = true;
+            } else {
+                propCanMove[i] = false;
+                if (!grid.isIntersectionNode(node)) {
+                    sleep(grid, lights, tick, i, node, dirIdx);
+                    continue;
+                }
+            }
+            active[kept] = i;
+            prevNode[kept] = node;
+            kept++;
+        }
+        activeCount = kept;
+    }
+
+    void wakeDeparted(int[] nodeArr) {
+        int count = activeCount;
+        for (int k = 0; k < count; k++) {
+            int from = prevNode[k];
+            if (nodeArr[active[k]] != from) {
+                nodeWaitHead[from] = wake(nodeWaitHead[from]);
+            }
+        }
+    }
+
+    private void sleep(Grid grid, LightProgram lights, int tick, int i, int node, int dirIdx) {
+        int target = grid.nodeNeighbor(node, dirIdx);
+        if (target < 0) {
+            return;
+        }
+        int li = grid.intersectionIndexAtNode(target);
+        if (li >= 0 && !lights.allows(li, tick, dirIdx)) {
+            int at = lights.nextAllowTick(li, tick, dirIdx);
+            if (at < 0) {
+                return;
+            }
+            int b = at % wheelHead.length;
+            waitNext[i] = wheelHead[b];
+            wheelHead[b] = i;
+        } else {
+            waitNext[i] = nodeWaitHead[target];
+            nodeWaitHead[target] = i;
+        }
+    }
+
+    private int wake(int head) {
+        for (int i = head; i != NONE; i = waitNext[i]) {
+            active[activeCount++] = i;
+        }
+        return NONE;
+    }
+}
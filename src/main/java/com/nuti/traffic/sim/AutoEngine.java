@@ -0,0 +1,205 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.grid.GridCache;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+// Picks engine and thread count per (grid, N bucket, cores) with a short probe; decisions persist in cacheFile.
+public final class AutoEngine implements SimulationEngine {
+
+    public static final String SOURCE_PROBE = "probe";
+    public static final String SOURCE_CACHE = "cache";
+    public static final String SOURCE_SINGLE_CORE = "single-core";
+
+    private static final int WARMUP_TICKS = 5;
+    private static final int PROBE_TICKS = 20;
+
+    private final Path cacheFile;
+    private final int cpus;
+    private final Properties decisions = new Properties();
+    private final Map<Path, String> gridKeys = new HashMap<>();
+    private boolean loaded;
+
+    private final SequentialEngine sequential = new SequentialEngine();
+    private final ParallelEngine parallel = new ParallelEngine();
+    private final SpatialEngine spatial = new SpatialEngine();
+    private final ForkJoinEngine forkJoin = new ForkJoinEngine();
+
+    public AutoEngine(Path cacheFile) {
+        this(cacheFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    AutoEngine(Path cacheFile, int cpus) {
+        this.cacheFile = cacheFile;
+        this.cpus = cpus;
+    }
+
+    @Override
+    public SimulationResult run(SimulationConfig config) {
+        try (SimulationSession session = new SimulationSession(config.gridPath())) {
+            return run(config, session);
+        }
+    }
+
+    @Override
+    public SimulationResult run(SimulationConfig config, SimulationSession session) {
+        EngineDecision decision = decide(config, session);
+        System.out.println("AUTO: mode=" + decision.mode() + " threads=" + decision.threads() + " source=" + decision.source());
+        SimulationConfig chosen = withMode(config, decision.mode(), decision.threads(), config.ticks(), true);
+        return runWith(chosen, session).withDecision(decision);
+    }
+
+    public EngineDecision decide(SimulationConfig config, SimulationSession session) {
+        if (cpus <= 1 || config.vehicles() == 0) {
+            return new EngineDecision(RunMode.SEQUENTIAL, 1, SOURCE_SINGLE_CORE, Double.NaN);
+        }
+
+        String key = decisionKey(session, config.vehicles());
+        EngineDecision cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        EngineDecision probed = probe(config, session);
+        if (key != null) {
+            decisions.setProperty(key, probed.mode() + "," + probed.threads() + "," + probed.probeMsPerTick());
+            store();
+        }
+        return probed;
+    }
+
+    private EngineDecision probe(SimulationConfig config, SimulationSession session) {
+        List<RunMode> modes = new ArrayList<>();
+        List<Integer> threads = new ArrayList<>();
+        modes.add(RunMode.SEQUENTIAL);
+        threads.add(1);
+        int maxStrips = session.grid().height() / SpatialEngine.MIN_STRIP_ROWS;
+        for (int t = 2; ; t *= 2) {
+            int p = Math.min(t, cpus);
+            modes.add(RunMode.PARALLEL);
+            threads.add(p);
+            modes.add(RunMode.FORKJOIN);
+            threads.add(p);
+            if (p <= maxStrips) {
+                modes.add(RunMode.SPATIAL);
+                threads.add(p);
+            }
+            if (p == cpus) {
+                break;
+            }
+        }
+
+        int probeTicks = Math.min(config.ticks(), PROBE_TICKS);
+        for (int c = 0; c < modes.size(); c++) {
+            runWith(withMode(config, modes.get(c), threads.get(c), Math.min(probeTicks, WARMUP_TICKS), false), session);
+        }
+
+        int best = 0;
+        double bestMs = Double.MAX_VALUE;
+        for (int c = 0; c < modes.size(); c++) {
+            long startNs = System.nanoTime();
+            runWith(withMode(config, modes.get(c), threads.get(c), probeTicks, false), session);
+            double msPerTick = (System.nanoTime() - startNs) / 1e6 / probeTicks;
+            if (msPerTick < bestMs) {
+                bestMs = msPerTick;
+                best = c;
+            }
+        }
+        return new EngineDecision(modes.get(best), threads.get(best), SOURCE_PROBE, bestMs);
+    }
+
+    private SimulationResult runWith(SimulationConfig config, SimulationSession session) {
+        return switch (config.mode()) {
+            case SEQUENTIAL -> sequential.run(config, session);
+            case PARALLEL -> parallel.run(config, session);
+            case SPATIAL -> spatial.run(config, session);
+            case FORKJOIN -> forkJoin.run(config, session);
+            case AUTO -> throw new IllegalArgumentException("AUTO is not a concrete engine");
+        };
+    }
+
+    // Probe runs write nothing: no ticks CSV, no trajectories, no checkpoints.
+    private static SimulationConfig withMode(SimulationConfig config, RunMode mode, int threads, int ticks, boolean finalRun) {
+        SimulationConfig c = config.withMode(mode, threads).withTicks(ticks);
+        if (finalRun) {
+            return c;
+        }
+        return c.withTicksCsv(config.outTicksCsv(), false)
+                .withTrajectoryFile(null)
+                .withCheckpoint(config.checkpointFile(), 0)
+                .withResume(false);
+    }
+
+    private String decisionKey(SimulationSession session, int vehicles) {
+        Path gridPath = session.gridPath();
+        if (gridPath == null) {
+            return null;
+        }
+        String gridKey = gridKeys.computeIfAbsent(gridPath, p -> HexFormat.of().formatHex(GridCache.sha256(p), 0, 8));
+        int nBucket = 32 - Integer.numberOfLeadingZeros(vehicles);
+        return gridKey + ".n" + nBucket + ".cpu" + cpus;
+    }
+
+    private EngineDecision lookup(String key) {
+        if (key == null) {
+            return null;
+        }
+        load();
+        String value = decisions.getProperty(key);
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split(",");
+        try {
+            return new EngineDecision(RunMode.valueOf(parts[0]), Integer.parseInt(parts[1]), SOURCE_CACHE, Double.parseDouble(parts[2]));
+        } catch (RuntimeException e) {
+            // Unreadable entry: probe again and overwrite it.
+            return null;
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (cacheFile == null || !Files.isRegularFile(cacheFile)) {
+            return;
+        }
+        try (Reader r = Files.newBufferedReader(cacheFile)) {
+            decisions.load(r);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read auto-mode cache: " + cacheFile, e);
+        }
+    }
+
+    private void store() {
+        if (cacheFile == null) {
+            return;
+        }
+        try {
+            Path parent = cacheFile.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            try (Writer w = Files.newBufferedWriter(tmp)) {
+                decisions.store(w, "traffic-abm auto mode decisions: <gridHash>.n<log2 N>.cpu<cores>=MODE,threads,ms_per_tick");
+            }
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write auto-mode cache: " + cacheFile, e);
+        }
+    }
+}
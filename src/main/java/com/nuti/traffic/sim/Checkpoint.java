@@ -0,0 +1,233 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.grid.GridCache;
+import com.nuti.traffic.model.Grid;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Everything a run needs to continue at tick: vehicle slots (positions plus the storage order left by reorderByNode)
+// and metric totals. Occupancy and stamps are rebuilt from positions, light states and RNG draws are pure functions of
+// the tick, and sleeping vehicles are an exact shortcut that starts awake. If the run writes ticks, the series so far
+// lives next to the checkpoint in <checkpoint>.ticks (moved, stopped per tick): each save writes only the rows since
+// the previous one, so neither the run nor the checkpoint holds the whole series. series tells whether that file
+// covers [0, tick).
+record Checkpoint(
+        int tick,
+        int[] nodes,
+        int[] dirs,
+        int[] ids,
+        long movedSum,
+        long stoppedSum,
+        boolean series
+) {
+
+    private static final int MAGIC = 0x504B4354;
+    private static final int VERSION = 3;
+    private static final int ROW_BYTES = 8;
+
+    static Checkpoint of(int tick, int[] nodes, int[] dirs, int[] ids, MetricsCollector metrics) {
+        return new Checkpoint(tick, nodes, dirs, ids, metrics.movedSum(), metrics.stoppedSum(), metrics.keepsRows());
+    }
+
+    static Path seriesPath(Path checkpoint) {
+        return checkpoint.resolveSibling(checkpoint.getFileName() + ".ticks");
+    }
+
+    void restoreVehicles(VehicleState vehicles) {
+        System.arraycopy(nodes, 0, vehicles.nodeIdxArray(), 0, nodes.length);
+        System.arraycopy(dirs, 0, vehicles.dirIdxArray(), 0, dirs.length);
+        System.arraycopy(ids, 0, vehicles.idArray(), 0, ids.length);
+    }
+
+    void restoreVehicles(VehicleState vehicles, long[] occ) {
+        restoreVehicles(vehicles);
+        for (int i = 0; i < nodes.length; i++) {
+            PackedOccupancy.set(occ, nodes[i], dirs[i]);
+        }
+    }
+
+    void restoreVehicles(VehicleState vehicles, int[] occ) {
+        restoreVehicles(vehicles);
+        for (int i = 0; i < nodes.length; i++) {
+            Occupancy.set(occ, nodes[i], dirs[i], ids[i]);
+        }
+    }
+
+    // Replays the saved rows into metrics (and so into its sink), or restores only the totals if nothing reads them.
+    void restoreMetrics(Path seriesPath, MetricsCollector metrics) {
+        if (series && metrics.writesSeries()) {
+            replaySeries(seriesPath, metrics);
+        } else if (metrics.writesSeries()) {
+            throw new IllegalStateException("Checkpoint at tick " + tick + " has no per-tick series to rebuild the ticks output");
+        } else {
+            metrics.restoreTotals(movedSum, stoppedSum);
+        }
+    }
+
+    void write(Path path, String fingerprint) {
+        try {
+            createParent(path);
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(fingerprint);
+                out.writeInt(tick);
+                out.writeLong(movedSum);
+                out.writeLong(stoppedSum);
+                out.writeBoolean(series);
+                writeInts(out, nodes);
+                writeInts(out, dirs);
+                writeInts(out, ids);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write checkpoint: " + path, e);
+        }
+    }
+
+    // Writes the rows of ticks [from, from + moved.length) and drops anything after them, such as rows a crashed run
+    // wrote past its last checkpoint. Called before the checkpoint that covers them is moved into place.
+    static void writeSeries(Path path, int from, int[] moved, int[] stopped) {
+        ByteBuffer rows = ByteBuffer.allocate(moved.length * ROW_BYTES);
+        for (int i = 0; i < moved.length; i++) {
+            rows.putInt(moved[i]).putInt(stopped[i]);
+        }
+        rows.flip();
+        long end = (long) (from + moved.length) * ROW_BYTES;
+        try {
+            createParent(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write checkpoint ticks: " + path, e);
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long pos = (long) from * ROW_BYTES;
+            while (rows.hasRemaining()) {
+                pos += ch.write(rows, pos);
+            }
+            ch.truncate(end);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write checkpoint ticks: " + path, e);
+        }
+    }
+
+    private void replaySeries(Path path, MetricsCollector metrics) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            for (int t = 0; t < tick; t++) {
+                metrics.record(t, in.readInt(), in.readInt());
+            }
+        } catch (EOFException | NoSuchFileException e) {
+            throw new IllegalArgumentException("Checkpoint ticks " + path + " do not reach tick " + tick, e);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read checkpoint ticks: " + path, e);
+        }
+    }
+
+    // Mode and thread count are not part of the fingerprint: every engine produces the same state, so a checkpoint
+    // written by one engine can be resumed by another.
+    static Checkpoint read(Path path, SimulationConfig config, String fingerprint) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a checkpoint file: " + path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported checkpoint version " + version + ": " + path);
+            }
+            if (!in.readUTF().equals(fingerprint)) {
+                throw new IllegalArgumentException("Checkpoint " + path + " was written for a different grid, N, seed, turnProb or light plan");
+            }
+            int tick = in.readInt();
+            if (tick > config.ticks()) {
+                throw new IllegalArgumentException("Checkpoint " + path + " is at tick " + tick + ", past the requested ticks=" + config.ticks());
+            }
+            long movedSum = in.readLong();
+            long stoppedSum = in.readLong();
+            boolean series = in.readBoolean();
+            int[] nodes = readInts(in);
+            int[] dirs = readInts(in);
+            int[] ids = readInts(in);
+            if (nodes.length != config.vehicles() || dirs.length != nodes.length || ids.length != nodes.length) {
+                throw new IllegalArgumentException("Corrupt checkpoint vehicle arrays: " + path);
+            }
+            return new Checkpoint(tick, nodes, dirs, ids, movedSum, stoppedSum, series);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read checkpoint: " + path, e);
+        }
+    }
+
+    // The grid is hashed by its loaded cells rather than its file, so a text grid and its compiled .tgrid (--gridCache)
+    // can resume each other's checkpoints; a lights file is hashed by its contents. This reads every cell, so callers
+    // compute it once per run (see Checkpointer).
+    static String fingerprint(SimulationConfig config, Grid grid) {
+        String lights = (config.lightsFile() != null)
+                ? "file:" + HexFormat.of().formatHex(GridCache.sha256(config.lightsFile()))
+                : "period:" + config.lightPeriod();
+        return grid.width() + "x" + grid.height() + ":" + cellsHash(grid)
+                + "|N=" + config.vehicles()
+                + "|seed=" + config.seed()
+                + "|turnProb=" + Double.doubleToLongBits(config.turnProb())
+                + "|lights=" + lights;
+    }
+
+    private static String cellsHash(Grid grid) {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        byte[] chunk = new byte[1 << 16];
+        int n = 0;
+        for (int i = 0; i < grid.cellCount(); i++) {
+            chunk[n++] = (byte) grid.cellTypeAt(i).ordinal();
+            if (n == chunk.length) {
+                sha.update(chunk, 0, n);
+                n = 0;
+            }
+        }
+        sha.update(chunk, 0, n);
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    private static void createParent(Path path) throws IOException {
+        Path parent = path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative array length in checkpoint");
+        }
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,140 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.model.Grid;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Periodic checkpoints for one run. The simulation thread only copies the state; a background thread serializes it.
+// At most one write is in flight: the next save waits for the previous one, which bounds memory to two snapshots.
+final class Checkpointer implements AutoCloseable {
+
+    private final SimulationConfig config;
+    private final Grid grid;
+    private final Path path;
+    private final Path seriesPath;
+    private final int interval;
+    private int savedTick;
+    private String fingerprint;
+    private ExecutorService writer;
+    private Future<?> pending;
+
+    Checkpointer(SimulationConfig config, Grid grid) {
+        this.config = config;
+        this.grid = grid;
+        this.path = config.checkpointFile();
+        this.seriesPath = (path != null) ? Checkpoint.seriesPath(path) : null;
+        this.interval = config.checkpointInterval();
+        if (interval < 0) {
+            throw new IllegalArgumentException("checkpointInterval must be >= 0");
+        }
+        if (path == null && (interval > 0 || config.resume())) {
+            throw new IllegalArgumentException("Checkpointing and resume need a checkpoint file");
+        }
+    }
+
+    // The checkpoint to continue from, or null to start at tick 0 (no resume requested or no checkpoint written yet).
+    Checkpoint resume() {
+        if (!config.resume() || !Files.isRegularFile(path)) {
+            return null;
+        }
+        if (config.trajectoryFile() != null) {
+            throw new IllegalArgumentException("Trajectory recording cannot continue a resumed run");
+        }
+        Checkpoint checkpoint = Checkpoint.read(path, config, fingerprint());
+        savedTick = checkpoint.tick();
+        System.out.println("[" + Instant.now() + "] RESUME from checkpoint=" + path + " tick=" + checkpoint.tick());
+        return checkpoint;
+    }
+
+    void restoreMetrics(Checkpoint checkpoint, MetricsCollector metrics) {
+        checkpoint.restoreMetrics(seriesPath, metrics);
+    }
+
+    static int startTick(Checkpoint checkpoint) {
+        return (checkpoint != null) ? checkpoint.tick() : 0;
+    }
+
+    // True when the state after nextTick - 1 should be saved; never after the last tick.
+    boolean due(int nextTick) {
+        return interval > 0 && nextTick % interval == 0 && nextTick < config.ticks();
+    }
+
+    void save(int nextTick, VehicleState vehicles, MetricsCollector metrics) {
+        int n = vehicles.vehicleCount();
+        save(nextTick, Arrays.copyOf(vehicles.nodeIdxArray(), n), Arrays.copyOf(vehicles.dirIdxArray(), n), Arrays.copyOf(vehicles.idArray(), n), metrics);
+    }
+
+    // The slot arrays must already be private copies; the metric rows since the previous save are copied here.
+    void save(int nextTick, int[] nodes, int[] dirs, int[] ids, MetricsCollector metrics) {
+        Checkpoint snapshot = Checkpoint.of(nextTick, nodes, dirs, ids, metrics);
+        int from = savedTick;
+        int[] moved = null;
+        int[] stopped = null;
+        if (snapshot.series()) {
+            moved = new int[nextTick - from];
+            stopped = new int[nextTick - from];
+            metrics.copyRows(from, moved, stopped);
+        }
+        savedTick = nextTick;
+        awaitPending();
+        if (writer == null) {
+            writer = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "traffic-checkpoint-writer");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        int[] movedRows = moved;
+        int[] stoppedRows = stopped;
+        pending = writer.submit(() -> {
+            if (movedRows != null) {
+                Checkpoint.writeSeries(seriesPath, from, movedRows, stoppedRows);
+            }
+            snapshot.write(path, fingerprint());
+        });
+    }
+
+    // Hashed on first use: by resume() before the run starts, otherwise by the first write on the writer thread. Both
+    // happen before any later write is submitted, so the field needs no synchronization.
+    private String fingerprint() {
+        if (fingerprint == null) {
+            fingerprint = Checkpoint.fingerprint(config, grid);
+        }
+        return fingerprint;
+    }
+
+    @Override
+    public void close() {
+        try {
+            awaitPending();
+        } finally {
+            if (writer != null) {
+                writer.shutdown();
+                writer = null;
+            }
+        }
+    }
+
+    private void awaitPending() {
+        if (pending == null) {
+            return;
+        }
+        Future<?> f = pending;
+        pending = null;
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing checkpoint: " + path, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to write checkpoint: " + path, e.getCause());
+        }
+    }
+}
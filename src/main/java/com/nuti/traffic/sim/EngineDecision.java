@@ -0,0 +1,9 @@
+package com.nuti.traffic.sim;
+
+public record EngineDecision(
+        RunMode mode,
+        int threads,
+        String source,
+        double probeMsPerTick
+) {
+}
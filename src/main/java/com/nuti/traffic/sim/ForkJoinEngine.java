@@ -0,0 +1,217 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.io.TrajectoryWriter;
+import com.nuti.traffic.model.Grid;
+import com.nuti.traffic.model.LightProgram;
+
+import java.time.Instant;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public final class ForkJoinEngine implements SimulationEngine {
+
+    private static final int MIN_GRAIN = 256;
+    private static final int SPLITS_PER_THREAD = 16;
+    private static final int MAX_SURPLUS_TASKS = 3;
+
+    private final VehicleInitializer initializer = new VehicleInitializer();
+
+    @Override
+    public SimulationResult run(SimulationConfig config) {
+        try (SimulationSession session = new SimulationSession(config.gridPath())) {
+            return run(config, session);
+        }
+    }
+
+    @Override
+    public SimulationResult run(SimulationConfig config, SimulationSession session) {
+        int threads = config.threads();
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be > 0");
+        }
+
+        session.checkConfig(config);
+        Grid grid = session.grid();
+
+        int n = config.vehicles();
+        int ticks = config.ticks();
+
+        Kernel k = new Kernel();
+        k.grid = grid;
+        k.config = config;
+        k.vehicles = session.vehicles(n);
+        k.lights = session.lights(config);
+        k.propTargetNode = session.propTargetNode(n);
+        k.propTargetDir = session.propTargetDir(n);
+        k.propCanMove = session.propCanMove(n);
+
+        long[] occA = session.occupancyA();
+        long[] occB = session.occupancyB();
+
+        Checkpointer checkpoints = new Checkpointer(config, grid);
+        Checkpoint resumed = checkpoints.resume();
+        int startTick = Checkpointer.startTick(resumed);
+        if (resumed != null) {
+            resumed.restoreVehicles(k.vehicles, ((startTick & 1) == 0) ? occA : occB);
+        } else {
+            initializer.initialize(grid, config.seed(), n, k.vehicles, occA);
+        }
+
+        int stampBase = session.reserveStamps(ticks);
+        k.slots = session.winnerSlots();
+        ForkJoinPool pool = session.forkJoinPool(threads);
+        int vehicleGrain = Math.max(MIN_GRAIN, n / (threads * SPLITS_PER_THREAD));
+
+        try (checkpoints; TickOutput output = new TickOutput(config, TickOutput.defaultPath(config), grid, k.vehicles, session.tickListener())) {
+            MetricsCollector metrics = output.metrics();
+            if (resumed != null) {
+                checkpoints.restoreMetrics(resumed, metrics);
+            }
+            if (config.trajectoryFile() != null) {
+                k.trajectories = ThreadLocal.withInitial(output::trajectoryLane);
+            }
+
+            Instant start = Instant.now();
+            long startNs = System.nanoTime();
+            session.log("[" + start + "] START FORKJOIN run grid=" + config.gridPath() + " N=" + n + " ticks=" + ticks + " threads=" + threads + " seed=" + config.seed());
+
+            int reorderEvery = config.reorderInterval();
+            for (int tick = startTick; tick < ticks; tick++) {
+                if (reorderEvery > 0 && tick > 0 && tick % reorderEvery == 0) {
+                    k.vehicles.reorderByNode(grid.nodeCount());
+                }
+                k.tick = tick;
+                k.stamp = stampBase + tick + 1;
+                k.occ = ((tick & 1) == 0) ? occA : occB;
+                k.occNext = ((tick & 1) == 0) ? occB : occA;
+
+                pool.invoke(new Span(k, Phase.PROPOSE, 0, n, vehicleGrain));
+                int moved = pool.invoke(new Span(k, Phase.APPLY, 0, n, vehicleGrain));
+                metrics.record(tick, moved, n - moved);
+                if (checkpoints.due(tick + 1)) {
+                    checkpoints.save(tick + 1, k.vehicles, metrics);
+                }
+            }
+
+            long elapsedMs = (System.nanoTime() - startNs) / 1_000_000L;
+            Instant end = Instant.now();
+            session.log("[" + end + "] END FORKJOIN run elapsed=" + elapsedMs + " ms");
+
+            double avgFlow = metrics.avgFlow(ticks);
+            double avgStopped = metrics.avgStopped(ticks);
+
+            session.log("MODE: FORKJOIN");
+            session.log("N=" + n + " ticks=" + ticks + " threads=" + threads + " moved_avg=" + avgFlow + " stopped_avg=" + avgStopped + " time_ms=" + elapsedMs);
+
+            output.finish();
+
+            return new SimulationResult(RunMode.FORKJOIN, n, ticks, threads, elapsedMs, avgFlow, avgStopped);
+        }
+    }
+
+    private enum Phase {
+        PROPOSE,
+        APPLY
+    }
+
+    // Per-run state shared by all tasks; the per-tick fields are published to workers by pool.invoke.
+    private static final class Kernel {
+        Grid grid;
+        SimulationConfig config;
+        VehicleState vehicles;
+        LightProgram lights;
+        int[] propTargetNode;
+        int[] propTargetDir;
+        boolean[] propCanMove;
+        WinnerSlots slots;
+        // Spans land on arbitrary pool threads, so each thread records into its own lane.
+        ThreadLocal<TrajectoryWriter.Lane> trajectories;
+
+        int tick;
+        int stamp;
+        long[] occ;
+        long[] occNext;
+
+        int run(Phase phase, int from, int to) {
+            return switch (phase) {
+                case PROPOSE -> propose(from, to);
+                case APPLY -> apply(from, to);
+            };
+        }
+
+        private int propose(int from, int to) {
+            int[] ids = vehicles.idArray();
+            for (int i = from; i < to; i++) {
+                MoveRules.computeProposalForVehicle(grid, lights, vehicles, occ, config, tick, i, propTargetNode, propTargetDir, propCanMove);
+                if (propCanMove[i]) {
+                    slots.propose(propTargetNode[i] * 4 + propTargetDir[i], ids[i], stamp);
+                }
+            }
+            return 0;
+        }
+
+        private int apply(int from, int to) {
+            int[] nodeArr = vehicles.nodeIdxArray();
+            int[] dirArr = vehicles.dirIdxArray();
+            int[] ids = vehicles.idArray();
+            TrajectoryWriter.Lane trajectory = (trajectories != null) ? trajectories.get() : null;
+            int moved = 0;
+            for (int i = from; i < to; i++) {
+                int node = nodeArr[i];
+                int dirIdx = dirArr[i];
+
+                int nextNode = node;
+                int nextDirIdx = dirIdx;
+                if (propCanMove[i] && slots.wins(propTargetNode[i], propTargetDir[i], ids[i], stamp)) {
+                    nextNode = propTargetNode[i];
+                    nextDirIdx = propTargetDir[i];
+                    moved++;
+                    if (trajectory != null) {
+                        trajectory.record(tick, ids[i], nextDirIdx);
+                    }
+                }
+
+                nodeArr[i] = nextNode;
+                dirArr[i] = nextDirIdx;
+                PackedOccupancy.clearAtomic(occ, node, dirIdx);
+
+                if (!PackedOccupancy.setAtomic(occNext, nextNode, nextDirIdx)) {
+                    throw new IllegalStateException("Double-occupancy at tick=" + tick + " cellIdx=" + grid.cellOfNode(nextNode) + " dirIdx=" + nextDirIdx);
+                }
+            }
+            return moved;
+        }
+    }
+
+    // Splits while the range is above the grain and the local deque is not already backed up, so idle workers
+    // steal the remaining halves instead of waiting on a fixed chunk.
+    private static final class Span extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final Kernel k;
+        private final Phase phase;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        Span(Kernel k, Phase phase, int from, int to, int grain) {
+            this.k = k;
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from > grain && getSurplusQueuedTaskCount() <= MAX_SURPLUS_TASKS) {
+                int mid = (from + to) >>> 1;
+                Span right = new Span(k, phase, mid, to, grain);
+                right.fork();
+                int left = new Span(k, phase, from, mid, grain).compute();
+                return left + right.join();
+            }
+            return k.run(phase, from, to);
+        }
+    }
+}
@@ -1,29 +1,106 @@
 package com.nuti.traffic.sim;
 
+import com.nuti.traffic.io.TickSink;
+
+// Keeps the per-tick series in memory (MetricsCollector(ticks)), forwards it to a sink (optionally also keeping the
+// last rows, so the next checkpoint can persist them), or keeps only totals and the last tick (no-arg, for per-worker
+// partial counts). Kept rows live in a ring indexed by tick % rows; with rows == ticks that is the whole series.
 public final class MetricsCollector {
 
     private final int[] moved;
     private final int[] stopped;
+    private final TickSink sink;
     private long movedSum;
     private long stoppedSum;
+    private int lastMoved;
+    private int lastStopped;
+
+    public MetricsCollector() {
+        this(null, null, null);
+    }
 
     public MetricsCollector(int ticks) {
-        this.moved = new int[ticks];
-        this.stopped = new int[ticks];
+        this(new int[ticks], new int[ticks], null);
+    }
+
+    public MetricsCollector(TickSink sink) {
+        this(null, null, sink);
+    }
+
+    public MetricsCollector(TickSink sink, int rows) {
+        this(new int[rows], new int[rows], sink);
+    }
+
+    private MetricsCollector(int[] moved, int[] stopped, TickSink sink) {
+        this.moved = moved;
+        this.stopped = stopped;
+        this.sink = sink;
     }
 
     public void record(int tick, int movedCount, int stoppedCount) {
-        moved[tick] = movedCount;
-        stopped[tick] = stoppedCount;
+        lastMoved = movedCount;
+        lastStopped = stoppedCount;
         movedSum += movedCount;
         stoppedSum += stoppedCount;
+        if (moved != null) {
+            int slot = tick % moved.length;
+            moved[slot] = movedCount;
+            stopped[slot] = stoppedCount;
+        }
+        if (sink != null) {
+            sink.accept(tick, movedCount, stoppedCount);
+        }
+    }
+
+    public int lastMoved() {
+        return lastMoved;
+    }
+
+    public int lastStopped() {
+        return lastStopped;
+    }
+
+    long movedSum() {
+        return movedSum;
+    }
+
+    long stoppedSum() {
+        return stoppedSum;
+    }
+
+    boolean keepsRows() {
+        return moved != null;
+    }
+
+    // Copies the rows of ticks [from, from + movedOut.length), which must still be in the ring.
+    void copyRows(int from, int[] movedOut, int[] stoppedOut) {
+        if (movedOut.length > moved.length) {
+            throw new IllegalArgumentException("Only the last " + moved.length + " rows are kept, asked for " + movedOut.length);
+        }
+        for (int i = 0; i < movedOut.length; i++) {
+            int slot = (from + i) % moved.length;
+            movedOut[i] = moved[slot];
+            stoppedOut[i] = stopped[slot];
+        }
+    }
+
+    // True if the per-tick rows end up somewhere (memory or a sink), so a resumed run must replay them.
+    boolean writesSeries() {
+        return moved != null || sink != null;
+    }
+
+    void restoreTotals(long movedTotal, long stoppedTotal) {
+        movedSum = movedTotal;
+        stoppedSum = stoppedTotal;
     }
 
     public int[] movedPerTick() {
+        requireSeries();
         return moved;
     }
 
     public int[] stoppedPerTick() {
+        requireSeries();
         return stopped;
     }
 
@@ -40,4 +117,10 @@ public final class MetricsCollector {
         }
         return stoppedSum / (double) ticks;
     }
+
+    private void requireSeries() {
+        if (moved == null) {
+            throw new IllegalStateException("Per-tick series is not kept in memory by this collector");
+        }
+    }
 }
@@ -1,9 +1,8 @@
 package com.nuti.traffic.sim;
 
-import com.nuti.traffic.model.CellType;
 import com.nuti.traffic.model.Direction;
 import com.nuti.traffic.model.Grid;
-import com.nuti.traffic.model.TrafficLight;
+import com.nuti.traffic.model.LightProgram;
 import com.nuti.traffic.util.DeterministicRng;
 
 final class MoveRules {
@@ -13,84 +12,127 @@ final class MoveRules {
 
     static void computeProposalForVehicle(
             Grid grid,
-            TrafficLight[] lights,
+            LightProgram lights,
             VehicleState vehicles,
-            int[] occ,
+            long[] occ,
             SimulationConfig config,
             int tick,
             int i,
-            int[] propTargetCell,
+            int[] propTargetNode,
             int[] propTargetDir,
             boolean[] propCanMove
     ) {
-        int cell = vehicles.cellIdx(i);
-        int dirIdx = vehicles.dirIdx(i);
-        Direction dir = Direction.fromIndex(dirIdx);
-
-        int attemptDirIdx = dirIdx;
-        Direction attemptDir = dir;
-
-        if (grid.cellTypeAt(cell) == CellType.INTERSECTION) {
-            double r = DeterministicRng.unitDouble(config.seed(), i, tick, 1L);
-            if (r < config.turnProb()) {
-                double r2 = DeterministicRng.unitDouble(config.seed(), i, tick, 2L);
-                attemptDir = (r2 < 0.5) ? leftTurn(dir) : rightTurn(dir);
-                attemptDirIdx = attemptDir.index();
-            }
-        }
-
-        int target = nextCell(grid, cell, attemptDir);
-        if (target < 0 || !grid.isTransitable(target)) {
+        int key = proposeKey(grid, lights, occ, config, tick, vehicles.id(i), vehicles.nodeIdx(i), vehicles.dirIdx(i));
+        if (key < 0) {
             propCanMove[i] = false;
             return;
         }
 
-        if (grid.cellTypeAt(cell) != CellType.INTERSECTION && grid.cellTypeAt(target) == CellType.INTERSECTION) {
-            int intersectionIndex = grid.intersectionIndexAtCell(target);
-            if (intersectionIndex < 0) {
-                propCanMove[i] = false;
-                return;
-            }
-            if (!lights[intersectionIndex].allows(attemptDir)) {
-                propCanMove[i] = false;
-                return;
-            }
-        }
+        propTargetNode[i] = key / 4;
+        propTargetDir[i] = key % 4;
+        propCanMove[i] = true;
+    }
 
-        if (!Occupancy.canOccupy(occ, target, attemptDirIdx)) {
-            propCanMove[i] = false;
-            return;
+    static int proposeKey(
+            Grid grid,
+            LightProgram lights,
+            long[] occ,
+            SimulationConfig config,
+            int tick,
+            int vehicleId,
+            int node,
+            int dirIdx
+    ) {
+        int key = candidateKey(grid, lights, null, 0, grid.nodeCount(), config.seed(), config.turnProb(), tick, vehicleId, node, dirIdx);
+        if (key < 0 || !PackedOccupancy.canOccupy(occ, key / 4, key % 4)) {
+            return -1;
         }
-
-        propTargetCell[i] = target;
-        propTargetDir[i] = attemptDirIdx;
-        propCanMove[i] = true;
+        return key;
     }
 
-    private static int nextCell(Grid grid, int cellIdx, Direction dir) {
-        int x = grid.x(cellIdx) + dir.dx();
-        int y = grid.y(cellIdx) + dir.dy();
-        if (!grid.inBounds(x, y)) {
+    // Lockstep replicas: occupancy is replica-interleaved (slot node * replicas + replica) and tickMasks holds every
+    // intersection's light mask for this tick, computed once for all replicas. Returns the real (not interleaved) key.
+    static int proposeReplicaKey(
+            Grid grid,
+            byte[] tickMasks,
+            long[] occ,
+            int replicas,
+            int replica,
+            long seed,
+            double turnProb,
+            int tick,
+            int vehicleId,
+            int node,
+            int dirIdx
+    ) {
+        int key = candidateKey(grid, null, tickMasks, 0, grid.nodeCount(), seed, turnProb, tick, vehicleId, node, dirIdx);
+        if (key < 0 || !PackedOccupancy.canOccupy(occ, key / 4 * replicas + replica, key % 4)) {
             return -1;
         }
-        return grid.idx(x, y);
+        return key;
     }
 
-    private static Direction leftTurn(Direction dir) {
-        return switch (dir) {
-            case NORTH -> Direction.WEST;
-            case SOUTH -> Direction.EAST;
-            case EAST -> Direction.NORTH;
-            case WEST -> Direction.SOUTH;
-        };
+    static int proposeKey(
+            Grid grid,
+            LightProgram lights,
+            int[] occ,
+            int occBaseNode,
+            int regionStart,
+            int regionEnd,
+            SimulationConfig config,
+            int tick,
+            int vehicleId,
+            int node,
+            int dirIdx
+    ) {
+        int key = candidateKey(grid, lights, null, regionStart, regionEnd, config.seed(), config.turnProb(), tick, vehicleId, node, dirIdx);
+        if (key < 0 || !Occupancy.canOccupy(occ, key / 4 - occBaseNode, key % 4)) {
+            return -1;
+        }
+        return key;
     }
 
-    private static Direction rightTurn(Direction dir) {
-        return switch (dir) {
-            case NORTH -> Direction.EAST;
-            case SOUTH -> Direction.WEST;
-            case EAST -> Direction.SOUTH;
-            case WEST -> Direction.NORTH;
-        };
+    // Target slot after the turn draw and the light check, before looking at occupancy; -1 if the move is impossible.
+    // Lights come from tickMasks if given.
+    private static int candidateKey(
+            Grid grid,
+            LightProgram lights,
+            byte[] tickMasks,
+            int regionStart,
+            int regionEnd,
+            long seed,
+            double turnProb,
+            int tick,
+            int vehicleId,
+            int node,
+            int dirIdx
+    ) {
+        int attemptDirIdx = dirIdx;
+        boolean atIntersection = grid.isIntersectionNode(node);
+
+        if (atIntersection) {
+            double r = DeterministicRng.unitDouble(seed, vehicleId, tick, 1L);
+            if (r < turnProb) {
+                double r2 = DeterministicRng.unitDouble(seed, vehicleId, tick, 2L);
+                attemptDirIdx = (r2 < 0.5) ? Direction.leftTurnIndex(dirIdx) : Direction.rightTurnIndex(dirIdx);
+            }
+        }
+
+        int target = grid.nodeNeighbor(node, attemptDirIdx);
+        if (target < regionStart || target >= regionEnd) {
+            return -1;
+        }
+
+        if (!atIntersection) {
+            int intersectionIndex = grid.intersectionIndexAtNode(target);
+            if (intersectionIndex >= 0) {
+                int mask = (tickMasks != null) ? tickMasks[intersectionIndex] : lights.mask(intersectionIndex, tick);
+                if (!LightProgram.maskAllows(mask, attemptDirIdx)) {
+                    return -1;
+                }
+            }
+        }
+
+        return Occupancy.key(target, attemptDirIdx);
     }
 }
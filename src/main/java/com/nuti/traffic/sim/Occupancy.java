@@ -8,8 +8,8 @@ public final class Occupancy {
 
     private final int[] occ;
 
-    public Occupancy(int cellCount) {
-        this.occ = new int[cellCount * 4];
+    public Occupancy(int nodeCount) {
+        this.occ = new int[nodeCount * 4];
         Arrays.fill(this.occ, -1);
     }
 
@@ -17,25 +17,24 @@ public final class Occupancy {
         return occ;
     }
 
-    public static int key(int cellIdx, int dirIdx) {
-        return cellIdx * 4 + dirIdx;
+    public static int key(int nodeIdx, int dirIdx) {
+        return nodeIdx * 4 + dirIdx;
     }
 
-    public static boolean canOccupy(int[] occ, int cellIdx, int dirIdx) {
-        int base = cellIdx * 4;
+    public static boolean canOccupy(int[] occ, int nodeIdx, int dirIdx) {
+        int base = nodeIdx * 4;
         if (occ[base + dirIdx] != -1) {
             return false;
         }
 
-        Direction d = Direction.fromIndex(dirIdx);
-        if (d.isHorizontal()) {
+        if (Direction.isHorizontalIndex(dirIdx)) {
             return occ[base + Direction.NORTH.index()] == -1 && occ[base + Direction.SOUTH.index()] == -1;
         }
         return occ[base + Direction.EAST.index()] == -1 && occ[base + Direction.WEST.index()] == -1;
     }
 
-    public static void set(int[] occ, int cellIdx, int dirIdx, int vehicleId) {
-        occ[key(cellIdx, dirIdx)] = vehicleId;
+    public static void set(int[] occ, int nodeIdx, int dirIdx, int vehicleId) {
+        occ[key(nodeIdx, dirIdx)] = vehicleId;
     }
 
     public static void clearAll(int[] occ) {
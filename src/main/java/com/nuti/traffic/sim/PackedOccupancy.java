@@ -0,0 +1,60 @@
+package com.nuti.traffic.sim;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+// 4 busy bits per node (bit = dirIdx), 16 nodes per long. Who occupies a slot is known from VehicleState, not from here.
+public final class PackedOccupancy {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // Bits that must be free to take slot dirIdx: the slot itself plus both slots of the other axis.
+    private static final int[] BLOCKING = { 0b1101, 0b1110, 0b0111, 0b1011 };
+
+    private PackedOccupancy() {
+    }
+
+    public static long[] create(int nodeCount) {
+        return new long[(nodeCount + 15) >>> 4];
+    }
+
+    public static int mask(long[] occ, int nodeIdx) {
+        return (int) (occ[nodeIdx >>> 4] >>> ((nodeIdx & 15) << 2)) & 0xF;
+    }
+
+    public static boolean canOccupy(long[] occ, int nodeIdx, int dirIdx) {
+        return (mask(occ, nodeIdx) & BLOCKING[dirIdx]) == 0;
+    }
+
+    public static boolean isSet(long[] occ, int nodeIdx, int dirIdx) {
+        return (occ[nodeIdx >>> 4] & bit(nodeIdx, dirIdx)) != 0;
+    }
+
+    public static void set(long[] occ, int nodeIdx, int dirIdx) {
+        occ[nodeIdx >>> 4] |= bit(nodeIdx, dirIdx);
+    }
+
+    public static void clear(long[] occ, int nodeIdx, int dirIdx) {
+        occ[nodeIdx >>> 4] &= ~bit(nodeIdx, dirIdx);
+    }
+
+    // Atomic variants for workers that share words: returns false if the slot was already taken.
+    public static boolean setAtomic(long[] occ, int nodeIdx, int dirIdx) {
+        long b = bit(nodeIdx, dirIdx);
+        long prev = (long) WORDS.getAndBitwiseOr(occ, nodeIdx >>> 4, b);
+        return (prev & b) == 0;
+    }
+
+    public static void clearAtomic(long[] occ, int nodeIdx, int dirIdx) {
+        WORDS.getAndBitwiseAnd(occ, nodeIdx >>> 4, ~bit(nodeIdx, dirIdx));
+    }
+
+    public static void clearAll(long[] occ) {
+        Arrays.fill(occ, 0L);
+    }
+
+    private static long bit(int nodeIdx, int dirIdx) {
+        return 1L << (((nodeIdx & 15) << 2) + dirIdx);
+    }
+}
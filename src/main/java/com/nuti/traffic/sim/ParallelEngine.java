@@ -1,106 +1,110 @@
 package com.nuti.traffic.sim;
 
-import com.nuti.traffic.grid.GridLoader;
-import com.nuti.traffic.io.CsvTicksWriter;
-import com.nuti.traffic.model.Direction;
+import com.nuti.traffic.io.TrajectoryWriter;
 import com.nuti.traffic.model.Grid;
-import com.nuti.traffic.model.TrafficLight;
-import com.nuti.traffic.model.TrafficLightState;
+import com.nuti.traffic.model.LightProgram;
 
-import java.nio.file.Path;
 import java.time.Instant;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Phaser;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 public final class ParallelEngine implements SimulationEngine {
 
-    private final GridLoader gridLoader = new GridLoader();
     private final VehicleInitializer initializer = new VehicleInitializer();
-    private final CsvTicksWriter csvTicksWriter = new CsvTicksWriter();
 
     @Override
     public SimulationResult run(SimulationConfig config) {
+        try (SimulationSession session = new SimulationSession(config.gridPath())) {
+            return run(config, session);
+        }
+    }
+
+    @Override
+    public SimulationResult run(SimulationConfig config, SimulationSession session) {
         int threads = config.threads();
         if (threads <= 0) {
             throw new IllegalArgumentException("threads must be > 0");
         }
 
-        Grid grid = gridLoader.load(config.gridPath());
+        session.checkConfig(config);
+        Grid grid = session.grid();
 
         int n = config.vehicles();
         int ticks = config.ticks();
-        VehicleState vehicles = new VehicleState(n);
-
-        Occupancy occA = new Occupancy(grid.cellCount());
-        Occupancy occB = new Occupancy(grid.cellCount());
-        int[] occ = occA.array();
-        int[] occNext = occB.array();
-
-        TrafficLight[] lights = buildLights(grid, config.lightPeriod());
-        initializer.initialize(grid, config.seed(), n, vehicles, occ);
+        VehicleState vehicles = session.vehicles(n);
+
+        long[] occEven = session.occupancyA();
+        long[] occOdd = session.occupancyB();
+
+        LightProgram lights = session.lights(config);
+        Checkpointer checkpoints = new Checkpointer(config, grid);
+        Checkpoint resumed = checkpoints.resume();
+        int startTick = Checkpointer.startTick(resumed);
+        if (resumed != null) {
+            resumed.restoreVehicles(vehicles, ((startTick & 1) == 0) ? occEven : occOdd);
+        } else {
+            initializer.initialize(grid, config.seed(), n, vehicles, occEven);
+        }
 
-        int[] propTargetCell = new int[n];
-        int[] propTargetDir = new int[n];
-        boolean[] propCanMove = new boolean[n];
+        int[] propTargetNode = session.propTargetNode(n);
+        int[] propTargetDir = session.propTargetDir(n);
+        boolean[] propCanMove = session.propCanMove(n);
 
-        int[] winners = new int[grid.cellCount() * 4];
-        int[] winnersStamp = new int[winners.length];
-        int[] axisMin = new int[grid.cellCount() * 2];
-        int[] axisMinStamp = new int[axisMin.length];
+        int stampBase = session.reserveStamps(ticks);
+        WinnerSlots slots = session.winnerSlots();
 
-        MetricsCollector metrics = new MetricsCollector(ticks);
+        int workerCount = Math.min(threads, Math.max(1, n));
+        MetricsCollector[] workerMetrics = new MetricsCollector[workerCount];
+        for (int wi = 0; wi < workerCount; wi++) {
+            workerMetrics[wi] = new MetricsCollector();
+        }
 
-        ExecutorService pool = Executors.newFixedThreadPool(threads);
-        try {
-            Instant start = Instant.now();
-            System.out.println("[" + start + "] START PARALLEL run grid=" + config.gridPath() + " N=" + n + " ticks=" + ticks + " threads=" + config.threads() + " seed=" + config.seed());
-
-            int workerCount = Math.min(threads, Math.max(1, n));
-            int[] movedCounts = new int[workerCount];
-            int[] stoppedCounts = new int[workerCount];
-
-            final class OccBuffers {
-                private volatile int[] occ;
-                private volatile int[] occNext;
-
-                private OccBuffers(int[] occ, int[] occNext) {
-                    this.occ = occ;
-                    this.occNext = occNext;
-                }
-
-                private void swap() {
-                    int[] a = occ;
-                    occ = occNext;
-                    occNext = a;
-                }
+        ExecutorService pool = (workerCount > 1) ? session.workerPool(workerCount - 1) : null;
+        Future<?>[] pending = new Future<?>[workerCount];
+        try (checkpoints; TickOutput output = new TickOutput(config, TickOutput.defaultPath(config), grid, vehicles, session.tickListener())) {
+            MetricsCollector metrics = output.metrics();
+            if (resumed != null) {
+                checkpoints.restoreMetrics(resumed, metrics);
             }
 
-            OccBuffers buffers = new OccBuffers(occ, occNext);
-            Phaser phaser = new Phaser(workerCount + 1);
+            Instant start = Instant.now();
+            session.log("[" + start + "] START PARALLEL run grid=" + config.gridPath() + " N=" + n + " ticks=" + ticks + " threads=" + config.threads() + " seed=" + config.seed());
 
+            Phaser phaser = new Phaser(workerCount);
             AtomicReference<Throwable> workerError = new AtomicReference<>();
 
+            int reorderEvery = config.reorderInterval();
             int chunk = (n + workerCount - 1) / workerCount;
+            Runnable[] workers = new Runnable[workerCount];
             for (int t = 0; t < workerCount; t++) {
-                int threadId = t;
-                int startIdx = t * chunk;
+                int startIdx = Math.min(n, t * chunk);
                 int endIdx = Math.min(n, startIdx + chunk);
+                MetricsCollector local = workerMetrics[t];
+                TrajectoryWriter.Lane trajectory = output.trajectoryLane();
+                boolean leader = (t == 0);
 
-                pool.execute(() -> {
+                workers[t] = () -> {
                     try {
-                        int[] cellArr = vehicles.cellIdxArray();
+                        int[] nodeArr = vehicles.nodeIdxArray();
                         int[] dirArr = vehicles.dirIdxArray();
+                        int[] ids = vehicles.idArray();
 
-                        for (int tick = 0; tick < ticks; tick++) {
-                            int phase = phaser.arriveAndAwaitAdvance();
-                            if (phase < 0) {
-                                return;
+                        for (int tick = startTick; tick < ticks; tick++) {
+                            if (reorderEvery > 0 && tick > 0 && tick % reorderEvery == 0) {
+                                if (leader) {
+                                    vehicles.reorderByNode(grid.nodeCount());
+                                }
+                                if (phaser.arriveAndAwaitAdvance() < 0) {
+                                    return;
+                                }
                             }
+                            long[] occLocal = ((tick & 1) == 0) ? occEven : occOdd;
+                            long[] occNextLocal = ((tick & 1) == 0) ? occOdd : occEven;
+                            int stamp = stampBase + tick + 1;
 
-                            int[] occLocal = buffers.occ;
                             for (int i = startIdx; i < endIdx; i++) {
                                 MoveRules.computeProposalForVehicle(
                                         grid,
@@ -110,258 +114,131 @@ public final class ParallelEngine implements SimulationEngine {
                                         config,
                                         tick,
                                         i,
-                                        propTargetCell,
+                                        propTargetNode,
                                         propTargetDir,
                                         propCanMove
                                 );
+                                if (propCanMove[i]) {
+                                    slots.propose(propTargetNode[i] * 4 + propTargetDir[i], ids[i], stamp);
+                                }
                             }
 
-                            phase = phaser.arriveAndAwaitAdvance();
-                            if (phase < 0) {
-                                return;
-                            }
-
-                            phase = phaser.arriveAndAwaitAdvance();
-                            if (phase < 0) {
+                            if (phaser.arriveAndAwaitAdvance() < 0) {
                                 return;
                             }
 
                             int moved = 0;
                             int stopped = 0;
 
-                            int[] occLocal2 = buffers.occ;
-                            int[] occNextLocal = buffers.occNext;
-                            int stamp = tick + 1;
-
                             for (int i = startIdx; i < endIdx; i++) {
-                                int cell = cellArr[i];
+                                int node = nodeArr[i];
                                 int dirIdx = dirArr[i];
 
-                                int oldKey = cell * 4 + dirIdx;
-
-                                int nextCell = cell;
+                                int nextNode = node;
                                 int nextDirIdx = dirIdx;
 
                                 if (propCanMove[i]) {
-                                    int key = propTargetCell[i] * 4 + propTargetDir[i];
-                                    if (winnersStamp[key] == stamp && winners[key] == i) {
-                                        nextCell = propTargetCell[i];
+                                    if (slots.wins(propTargetNode[i], propTargetDir[i], ids[i], stamp)) {
+                                        nextNode = propTargetNode[i];
                                         nextDirIdx = propTargetDir[i];
                                     }
                                 }
 
-                                if (nextCell != cell) {
+                                if (nextNode != node) {
                                     moved++;
+                                    if (trajectory != null) {
+                                        trajectory.record(tick, ids[i], nextDirIdx);
+                                    }
                                 } else {
                                     stopped++;
                                 }
 
-                                cellArr[i] = nextCell;
+                                nodeArr[i] = nextNode;
                                 dirArr[i] = nextDirIdx;
 
-                                occLocal2[oldKey] = -1;
+                                PackedOccupancy.clearAtomic(occLocal, node, dirIdx);
 
-                                int nextKey = nextCell * 4 + nextDirIdx;
-                                if (occNextLocal[nextKey] != -1) {
-                                    throw new IllegalStateException("Double-occupancy at tick=" + tick + " cellIdx=" + nextCell + " dirIdx=" + nextDirIdx);
+                                if (!PackedOccupancy.setAtomic(occNextLocal, nextNode, nextDirIdx)) {
+                                    throw new IllegalStateException("Double-occupancy at tick=" + tick + " cellIdx=" + grid.cellOfNode(nextNode) + " dirIdx=" + nextDirIdx);
                                 }
-                                occNextLocal[nextKey] = i;
                             }
 
-                            movedCounts[threadId] = moved;
-                            stoppedCounts[threadId] = stopped;
+                            local.record(tick, moved, stopped);
 
-                            phase = phaser.arriveAndAwaitAdvance();
-                            if (phase < 0) {
+                            if (phaser.arriveAndAwaitAdvance() < 0) {
                                 return;
                             }
+
+                            // Workers only overwrite their counts (and move vehicles) after the next tick's proposal barrier.
+                            if (leader) {
+                                recordTick(metrics, workerMetrics, tick);
+                                if (checkpoints.due(tick + 1)) {
+                                    checkpoints.save(tick + 1, vehicles, metrics);
+                                }
+                            }
                         }
                     } catch (Throwable t2) {
                         workerError.compareAndSet(null, t2);
                         phaser.forceTermination();
                     }
-                });
+                };
             }
 
             long startNs = System.nanoTime();
 
-            for (int tick = 0; tick < ticks; tick++) {
-                updateLights(lights, tick);
+            for (int t = 1; t < workerCount; t++) {
+                pending[t] = pool.submit(workers[t]);
+            }
+            workers[0].run();
 
-                int phase = phaser.arriveAndAwaitAdvance();
-                if (phase < 0) {
-                    Throwable t = workerError.get();
-                    if (t != null) {
-                        throw new RuntimeException(t);
-                    }
-                    throw new IllegalStateException("Worker phaser terminated unexpectedly");
-                }
-
-                phase = phaser.arriveAndAwaitAdvance();
-                if (phase < 0) {
-                    Throwable t = workerError.get();
-                    if (t != null) {
-                        throw new RuntimeException(t);
-                    }
-                    throw new IllegalStateException("Worker phaser terminated unexpectedly");
-                }
-
-                Throwable t = workerError.get();
-                if (t != null) {
-                    throw new RuntimeException(t);
-                }
-
-                int stamp = tick + 1;
-                resolveWinnersWithAxisExclusionStamped(
-                        n,
-                        propTargetCell,
-                        propTargetDir,
-                        propCanMove,
-                        winners,
-                        winnersStamp,
-                        axisMin,
-                        axisMinStamp,
-                        stamp
-                );
-
-                phase = phaser.arriveAndAwaitAdvance();
-                if (phase < 0) {
-                    t = workerError.get();
-                    if (t != null) {
-                        throw new RuntimeException(t);
-                    }
-                    throw new IllegalStateException("Worker phaser terminated unexpectedly");
-                }
-
-                phase = phaser.arriveAndAwaitAdvance();
-                if (phase < 0) {
-                    t = workerError.get();
-                    if (t != null) {
-                        throw new RuntimeException(t);
-                    }
-                    throw new IllegalStateException("Worker phaser terminated unexpectedly");
-                }
-
-                int moved = 0;
-                int stopped = 0;
-                for (int wi = 0; wi < workerCount; wi++) {
-                    moved += movedCounts[wi];
-                    stopped += stoppedCounts[wi];
-                }
-                metrics.record(tick, moved, stopped);
-
-                buffers.swap();
+            Throwable t = workerError.get();
+            if (t != null) {
+                throw new RuntimeException(t);
+            }
+            if (phaser.isTerminated()) {
+                throw new IllegalStateException("Worker phaser terminated unexpectedly");
             }
 
             long elapsedMs = (System.nanoTime() - startNs) / 1_000_000L;
             Instant end = Instant.now();
-            System.out.println("[" + end + "] END PARALLEL run elapsed=" + elapsedMs + " ms");
+            session.log("[" + end + "] END PARALLEL run elapsed=" + elapsedMs + " ms");
 
             double avgFlow = metrics.avgFlow(ticks);
             double avgStopped = metrics.avgStopped(ticks);
 
-            System.out.println("MODE: PARALLEL");
-            System.out.println("N=" + n + " ticks=" + ticks + " threads=" + config.threads() + " moved_avg=" + avgFlow + " stopped_avg=" + avgStopped + " time_ms=" + elapsedMs);
+            session.log("MODE: PARALLEL");
+            session.log("N=" + n + " ticks=" + ticks + " threads=" + config.threads() + " moved_avg=" + avgFlow + " stopped_avg=" + avgStopped + " time_ms=" + elapsedMs);
 
-            if (config.writeTicksCsv()) {
-                Path outTicks = (config.outTicksCsv() != null)
-                        ? config.outTicksCsv()
-                        : defaultTicksPath(config.mode(), n, ticks, config.threads());
-                csvTicksWriter.write(outTicks, metrics.movedPerTick(), metrics.stoppedPerTick());
-            }
+            output.finish();
 
             return new SimulationResult(RunMode.PARALLEL, n, ticks, config.threads(), elapsedMs, avgFlow, avgStopped);
         } finally {
-            pool.shutdown();
-            try {
-                pool.awaitTermination(5, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+            awaitWorkers(pending);
         }
     }
 
-    private static Path defaultTicksPath(RunMode mode, int n, int ticks, int threads) {
-        String m = (mode == RunMode.PARALLEL) ? "par" : "seq";
-        String p = (mode == RunMode.PARALLEL) ? ("_P" + threads) : "";
-        return Path.of("data", "ticks_" + m + "_N" + n + "_T" + ticks + p + ".csv");
-    }
-
-    private static TrafficLight[] buildLights(Grid grid, int period) {
-        TrafficLight[] lights = new TrafficLight[grid.intersectionCount()];
-        for (int i = 0; i < lights.length; i++) {
-            lights[i] = new TrafficLight(period, TrafficLightState.H_GREEN);
+    static void recordTick(MetricsCollector metrics, MetricsCollector[] partial, int tick) {
+        int moved = 0;
+        int stopped = 0;
+        for (MetricsCollector m : partial) {
+            moved += m.lastMoved();
+            stopped += m.lastStopped();
         }
-        return lights;
+        metrics.record(tick, moved, stopped);
     }
 
-    private static void updateLights(TrafficLight[] lights, int tick) {
-        for (TrafficLight l : lights) {
-            l.update(tick);
-        }
-    }
-
-    private static void resolveWinnersWithAxisExclusionStamped(
-            int n,
-            int[] propTargetCell,
-            int[] propTargetDir,
-            boolean[] propCanMove,
-            int[] winners,
-            int[] winnersStamp,
-            int[] axisMin,
-            int[] axisMinStamp,
-            int stamp
-    ) {
-        for (int i = 0; i < n; i++) {
-            if (!propCanMove[i]) {
-                continue;
-            }
-            int cell = propTargetCell[i];
-            int dirIdx = propTargetDir[i];
-            int axis = Direction.fromIndex(dirIdx).isHorizontal() ? 0 : 1;
-            int k = cell * 2 + axis;
-
-            if (axisMinStamp[k] != stamp) {
-                axisMinStamp[k] = stamp;
-                axisMin[k] = i;
-                continue;
-            }
-            if (i < axisMin[k]) {
-                axisMin[k] = i;
-            }
-        }
-
-        for (int i = 0; i < n; i++) {
-            if (!propCanMove[i]) {
-                continue;
-            }
-            int cell = propTargetCell[i];
-            int dirIdx = propTargetDir[i];
-            int axis = Direction.fromIndex(dirIdx).isHorizontal() ? 0 : 1;
-
-            int hKey = cell * 2;
-            int vKey = cell * 2 + 1;
-            int hMin = (axisMinStamp[hKey] == stamp) ? axisMin[hKey] : Integer.MAX_VALUE;
-            int vMin = (axisMinStamp[vKey] == stamp) ? axisMin[vKey] : Integer.MAX_VALUE;
-
-            if (hMin == Integer.MAX_VALUE && vMin == Integer.MAX_VALUE) {
-                continue;
-            }
-            int axisWinner = (vMin == Integer.MAX_VALUE || hMin < vMin) ? 0 : 1;
-            if (axisWinner != axis) {
+    static void awaitWorkers(Future<?>[] pending) {
+        for (Future<?> f : pending) {
+            if (f == null) {
                 continue;
             }
-
-            int key = cell * 4 + dirIdx;
-            if (winnersStamp[key] != stamp) {
-                winnersStamp[key] = stamp;
-                winners[key] = i;
-                continue;
-            }
-
-            int w = winners[key];
-            if (i < w) {
-                winners[key] = i;
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // Workers report their failures through workerError.
             }
         }
     }
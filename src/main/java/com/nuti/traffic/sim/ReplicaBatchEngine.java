@@ -0,0 +1,156 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.model.Grid;
+import com.nuti.traffic.model.LightProgram;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+// K seeds advanced in lockstep over one grid pass per tick. State is replica-interleaved: slot i * K + r is vehicle i
+// of replica r and occupancy node node * K + r is node of replica r, so replicas never share a conflict slot and the
+// ids (i * K + r) keep each replica's priority order. Light masks are computed once per tick for all replicas.
+// Each replica ends in exactly the state of its standalone sequential run.
+public final class ReplicaBatchEngine {
+
+    private final VehicleInitializer initializer = new VehicleInitializer();
+
+    public SimulationResult[] run(SimulationConfig config, long[] seeds) {
+        try (SimulationSession session = new SimulationSession(config.gridPath())) {
+            return run(config, seeds, session);
+        }
+    }
+
+    // config.seed() is ignored; every other run parameter is shared by the replicas.
+    public SimulationResult[] run(SimulationConfig config, long[] seeds, SimulationSession session) {
+        session.checkConfig(config);
+        checkOptions(config);
+        int k = seeds.length;
+        if (k == 0) {
+            throw new IllegalArgumentException("seeds must be non-empty");
+        }
+        Grid grid = session.grid();
+
+        int n = config.vehicles();
+        int ticks = config.ticks();
+        if ((long) n * k > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("N=" + n + " x " + k + " replicas does not fit in one batch");
+        }
+        int total = n * k;
+        double turnProb = config.turnProb();
+        LightProgram lights = session.lights(config);
+
+        long[] occA = session.replicaOccupancyA(k);
+        long[] occB = session.replicaOccupancyB(k);
+        long[] occ = occA;
+        long[] occNext = occB;
+
+        VehicleState vehicles = session.vehicles(total);
+        vehicles.resetOrder();
+        VehicleState single = new VehicleState(n);
+        for (int r = 0; r < k; r++) {
+            initializer.initialize(grid, seeds[r], n, single, session.occupancyA());
+            for (int i = 0; i < n; i++) {
+                int node = single.nodeIdx(i);
+                int dirIdx = single.dirIdx(i);
+                vehicles.set(i * k + r, node, dirIdx);
+                PackedOccupancy.set(occ, node * k + r, dirIdx);
+            }
+        }
+
+        int[] propTargetNode = session.propTargetNode(total);
+        int[] propTargetDir = session.propTargetDir(total);
+        boolean[] propCanMove = session.propCanMove(total);
+
+        int stampBase = session.reserveStamps(ticks);
+        StampedWinners winners = session.replicaWinners(k);
+
+        byte[] tickMasks = new byte[grid.intersectionCount()];
+        int[] moved = new int[k];
+        int[] stopped = new int[k];
+        MetricsCollector[] metrics = new MetricsCollector[k];
+        for (int r = 0; r < k; r++) {
+            metrics[r] = new MetricsCollector();
+        }
+
+        Instant start = Instant.now();
+        long startNs = System.nanoTime();
+        session.log("[" + start + "] START BATCH run grid=" + config.gridPath() + " N=" + n + " ticks=" + ticks + " replicas=" + k);
+
+        int[] nodeArr = vehicles.nodeIdxArray();
+        int[] dirArr = vehicles.dirIdxArray();
+        int[] ids = vehicles.idArray();
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int x = 0; x < tickMasks.length; x++) {
+                tickMasks[x] = (byte) lights.mask(x, tick);
+            }
+
+            for (int i = 0, v = 0; i < n; i++) {
+                for (int r = 0; r < k; r++, v++) {
+                    int key = MoveRules.proposeReplicaKey(grid, tickMasks, occ, k, r, seeds[r], turnProb, tick, i, nodeArr[v], dirArr[v]);
+                    if (key < 0) {
+                        propCanMove[v] = false;
+                        continue;
+                    }
+                    propTargetNode[v] = key / 4 * k + r;
+                    propTargetDir[v] = key % 4;
+                    propCanMove[v] = true;
+                }
+            }
+
+            int stamp = stampBase + tick + 1;
+            winners.resolve(total, ids, propTargetNode, propTargetDir, propCanMove, stamp);
+
+            Arrays.fill(moved, 0);
+            Arrays.fill(stopped, 0);
+            for (int i = 0, v = 0; i < n; i++) {
+                for (int r = 0; r < k; r++, v++) {
+                    int node = nodeArr[v];
+                    int dirIdx = dirArr[v];
+                    int nextSlot = node * k + r;
+                    int nextDirIdx = dirIdx;
+                    if (propCanMove[v] && winners.wins(propTargetNode[v], propTargetDir[v], ids[v], stamp)) {
+                        nextSlot = propTargetNode[v];
+                        nextDirIdx = propTargetDir[v];
+                        nodeArr[v] = nextSlot / k;
+                        dirArr[v] = nextDirIdx;
+                        moved[r]++;
+                    } else {
+                        stopped[r]++;
+                    }
+
+                    PackedOccupancy.clear(occ, node * k + r, dirIdx);
+                    if (PackedOccupancy.isSet(occNext, nextSlot, nextDirIdx)) {
+                        throw new IllegalStateException("Double-occupancy at tick=" + tick + " replica=" + r + " cellIdx=" + grid.cellOfNode(nextSlot / k) + " dirIdx=" + nextDirIdx);
+                    }
+                    PackedOccupancy.set(occNext, nextSlot, nextDirIdx);
+                }
+            }
+            for (int r = 0; r < k; r++) {
+                metrics[r].record(tick, moved[r], stopped[r]);
+            }
+
+            long[] swapped = occ;
+            occ = occNext;
+            occNext = swapped;
+        }
+
+        long elapsedMs = (System.nanoTime() - startNs) / 1_000_000L;
+        session.log("[" + Instant.now() + "] END BATCH run elapsed=" + elapsedMs + " ms");
+
+        // Replicas share every pass, so each one is charged an equal share of the batch time.
+        long perReplicaMs = elapsedMs / k;
+        SimulationResult[] results = new SimulationResult[k];
+        for (int r = 0; r < k; r++) {
+            results[r] = new SimulationResult(RunMode.SEQUENTIAL, n, ticks, 1, perReplicaMs, metrics[r].avgFlow(ticks), metrics[r].avgStopped(ticks));
+        }
+        return results;
+    }
+
+    // Per-run outputs have no per-replica destination; reorder and sleep are exact shortcuts, so skipping them changes
+    // nothing but speed.
+    private static void checkOptions(SimulationConfig config) {
+        if (config.writeTicksCsv() || config.trajectoryFile() != null || config.checkpointFile() != null || config.resume()) {
+            throw new IllegalArgumentException("Batched replicas do not write ticks, trajectories or checkpoints");
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.grid.GridCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// On-disk memo of run results (averages plus the per-tick series), one file per key. A run's result is a pure function
+// of the grid contents, N, ticks, seed, turnProb and the light plan, so engine, threads, reorder and sleep are not
+// part of the key. Recency is the file's modification time (bumped on every hit) and the least recently used
+// entries are deleted once the directory grows past its size bound.
+public final class ResultCache {
+
+    // Bump whenever a change to the movement rules, the lights or the initial placement changes results.
+    private static final int MODEL_VERSION = 1;
+
+    private static final int MAGIC = 0x52455343;
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".res";
+
+    public record Entry(double avgFlow, double avgStopped, int[] moved, int[] stopped) {
+    }
+
+    private final Path dir;
+    private final long maxBytes;
+    private final Map<String, String> fileHashes = new ConcurrentHashMap<>();
+
+    public ResultCache(Path dir, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be > 0");
+        }
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create result cache directory: " + dir, e);
+        }
+    }
+
+    // Runs that write trajectories or checkpoints, or continue from one, always execute.
+    public static boolean cacheable(SimulationConfig config) {
+        return config.trajectoryFile() == null && config.checkpointFile() == null && !config.resume();
+    }
+
+    // Runs config unless its result is cached. On a hit no simulation runs: the configured ticks output is rebuilt
+    // from the cached series and the result reports time 0. An AUTO hit still picks its engine (from the decision
+    // cache, or by probing), so the result and the default ticks path name the engine a real run would use.
+    public SimulationResult run(SimulationEngine engine, SimulationConfig config) {
+        if (!cacheable(config)) {
+            return engine.run(config);
+        }
+        String key = key(config);
+        Entry hit = get(key);
+        if (hit != null) {
+            System.out.println("[" + Instant.now() + "] CACHE HIT key=" + key + " N=" + config.vehicles() + " ticks=" + config.ticks() + " seed=" + config.seed());
+            EngineDecision decision = null;
+            if (engine instanceof AutoEngine auto && config.mode() == RunMode.AUTO) {
+                try (SimulationSession session = new SimulationSession(config.gridPath())) {
+                    decision = auto.decide(config, session);
+                }
+                System.out.println("AUTO: mode=" + decision.mode() + " threads=" + decision.threads() + " source=" + decision.source());
+                config = config.withMode(decision.mode(), decision.threads());
+            }
+            if (config.writeTicksCsv()) {
+                try (TickOutput output = new TickOutput(config, TickOutput.defaultPath(config), null, null, null)) {
+                    MetricsCollector metrics = output.metrics();
+                    for (int t = 0; t < config.ticks(); t++) {
+                        metrics.record(t, hit.moved()[t], hit.stopped()[t]);
+                    }
+                    output.finish();
+                }
+            }
+            System.out.println("N=" + config.vehicles() + " ticks=" + config.ticks() + " moved_avg=" + hit.avgFlow() + " stopped_avg=" + hit.avgStopped() + " time_ms=0 (cached)");
+            return new SimulationResult(config.mode(), config.vehicles(), config.ticks(), config.threads(), 0L, hit.avgFlow(), hit.avgStopped(), decision);
+        }
+
+        TickRecorder ticks = new TickRecorder(config.ticks());
+        try (SimulationSession session = new SimulationSession(config.gridPath())) {
+            session.setTickListener(ticks);
+            SimulationResult res = engine.run(config, session);
+            put(key, new Entry(res.avgFlow(), res.avgStopped(), ticks.moved(), ticks.stopped()));
+            return res;
+        }
+    }
+
+    // For timed runs: always executes, then stores the result or checks it against the cached one, replacing a
+    // differing entry (stale after a model change that did not bump MODEL_VERSION).
+    public SimulationResult runTimed(SimulationEngine engine, SimulationConfig config, SimulationSession session) {
+        if (!cacheable(config)) {
+            return engine.run(config, session);
+        }
+        TickRecorder ticks = new TickRecorder(config.ticks());
+        SimulationResult res;
+        session.setTickListener(ticks);
+        try {
+            res = engine.run(config, session);
+        } finally {
+            session.setTickListener(null);
+        }
+        record(config, res, ticks);
+        return res;
+    }
+
+    private void record(SimulationConfig config, SimulationResult res, TickRecorder ticks) {
+        String key = key(config);
+        Entry fresh = new Entry(res.avgFlow(), res.avgStopped(), ticks.moved(), ticks.stopped());
+        Entry cached = get(key);
+        if (cached != null && sameResult(cached, fresh)) {
+            return;
+        }
+        if (cached != null) {
+            System.err.println("WARNING: cached result " + key + " differs from this run (N=" + config.vehicles() + " ticks=" + config.ticks() + " seed=" + config.seed() + "); replacing it");
+        }
+        put(key, fresh);
+    }
+
+    public String key(SimulationConfig config) {
+        String lights = (config.lightsFile() != null) ? "lights=" + fileHash(config.lightsFile()) : "period=" + config.lightPeriod();
+        return sha256("model=" + MODEL_VERSION
+                + "|grid=" + fileHash(config.gridPath())
+                + "|N=" + config.vehicles()
+                + "|ticks=" + config.ticks()
+                + "|seed=" + config.seed()
+                + "|turnProb=" + Double.doubleToLongBits(config.turnProb())
+                + "|" + lights);
+    }
+
+    // A missing, unreadable or corrupt entry is a miss; corrupt files are removed.
+    public Entry get(String key) {
+        Path file = dir.resolve(key + EXTENSION);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            return null;
+        }
+        Entry entry = decode(key, bytes);
+        if (entry == null) {
+            deleteQuietly(file);
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            // Another process evicted it meanwhile; the entry we read is still valid.
+        }
+        return entry;
+    }
+
+    public void put(String key, Entry entry) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long size = 4L + 4 + 4 + keyBytes.length + 8 + 8 + 4 + 8L * entry.moved().length;
+        if (size > maxBytes || size > Integer.MAX_VALUE) {
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) size);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(keyBytes.length).put(keyBytes);
+        buf.putDouble(entry.avgFlow()).putDouble(entry.avgStopped());
+        buf.putInt(entry.moved().length);
+        for (int v : entry.moved()) {
+            buf.putInt(v);
+        }
+        for (int v : entry.stopped()) {
+            buf.putInt(v);
+        }
+
+        Path file = dir.resolve(key + EXTENSION);
+        Path tmp = dir.resolve(key + "." + ProcessHandle.current().pid() + "-" + Thread.currentThread().getId() + ".tmp");
+        try {
+            Files.write(tmp, buf.array());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(tmp);
+            throw new RuntimeException("Failed to write result cache entry: " + file, e);
+        }
+        evict();
+    }
+
+    private synchronized void evict() {
+        List<Path> files = new ArrayList<>();
+        List<BasicFileAttributes> attrs = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+            for (Path f : entries) {
+                try {
+                    BasicFileAttributes a = Files.readAttributes(f, BasicFileAttributes.class);
+                    files.add(f);
+                    attrs.add(a);
+                    total += a.size();
+                } catch (IOException e) {
+                    // Evicted by another process while listing.
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list result cache: " + dir, e);
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Integer[] order = new Integer[files.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> attrs.get(a).lastModifiedTime().compareTo(attrs.get(b).lastModifiedTime()));
+        for (int i = 0; i < order.length && total > maxBytes; i++) {
+            deleteQuietly(files.get(order[i]));
+            total -= attrs.get(order[i]).size();
+        }
+    }
+
+    private static Entry decode(String key, byte[] bytes) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                return null;
+            }
+            byte[] keyBytes = new byte[buf.getInt()];
+            buf.get(keyBytes);
+            if (!key.equals(new String(keyBytes, StandardCharsets.UTF_8))) {
+                return null;
+            }
+            double avgFlow = buf.getDouble();
+            double avgStopped = buf.getDouble();
+            int ticks = buf.getInt();
+            if (ticks < 0 || buf.remaining() != 8L * ticks) {
+                return null;
+            }
+            int[] moved = new int[ticks];
+            int[] stopped = new int[ticks];
+            buf.asIntBuffer().get(moved).get(stopped);
+            return new Entry(avgFlow, avgStopped, moved, stopped);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static boolean sameResult(Entry a, Entry b) {
+        return Double.compare(a.avgFlow(), b.avgFlow()) == 0
+                && Double.compare(a.avgStopped(), b.avgStopped()) == 0
+                && Arrays.equals(a.moved(), b.moved())
+                && Arrays.equals(a.stopped(), b.stopped());
+    }
+
+    // Content hash of an input file, memoized per path, size and modification time.
+    private String fileHash(Path path) {
+        try {
+            Path abs = path.toAbsolutePath().normalize();
+            BasicFileAttributes a = Files.readAttributes(abs, BasicFileAttributes.class);
+            String memo = abs + "|" + a.size() + "|" + a.lastModifiedTime().toMillis();
+            String cached = fileHashes.get(memo);
+            if (cached != null) {
+                return cached;
+            }
+            String hash = HexFormat.of().formatHex(GridCache.sha256(abs));
+            fileHashes.put(memo, hash);
+            return hash;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to hash input file: " + path, e);
+        }
+    }
+
+    private static String sha256(String s) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Left for the next eviction pass.
+        }
+    }
+}
@@ -2,5 +2,23 @@ package com.nuti.traffic.sim;
 
 public enum RunMode {
     SEQUENTIAL,
-    PARALLEL
+    PARALLEL,
+    SPATIAL,
+    FORKJOIN,
+    AUTO;
+
+    // CLI spelling: seq|par|spatial|fj|auto.
+    public static RunMode parse(String mode) {
+        if (mode == null) {
+            return SEQUENTIAL;
+        }
+        return switch (mode.toLowerCase()) {
+            case "seq" -> SEQUENTIAL;
+            case "par" -> PARALLEL;
+            case "spatial" -> SPATIAL;
+            case "fj" -> FORKJOIN;
+            case "auto" -> AUTO;
+            default -> throw new IllegalArgumentException("Invalid mode: " + mode + " (expected seq|par|spatial|fj|auto)");
+        };
+    }
 }
@@ -1,111 +1,119 @@
 package com.nuti.traffic.sim;
 
-import com.nuti.traffic.grid.GridLoader;
-import com.nuti.traffic.io.CsvTicksWriter;
-import com.nuti.traffic.model.Direction;
+import com.nuti.traffic.io.TrajectoryWriter;
 import com.nuti.traffic.model.Grid;
-import com.nuti.traffic.model.TrafficLight;
-import com.nuti.traffic.model.TrafficLightState;
+import com.nuti.traffic.model.LightProgram;
 
-import java.nio.file.Path;
 import java.time.Instant;
 import java.util.Arrays;
 
 public final class SequentialEngine implements SimulationEngine {
 
-    private final GridLoader gridLoader = new GridLoader();
     private final VehicleInitializer initializer = new VehicleInitializer();
-    private final CsvTicksWriter csvTicksWriter = new CsvTicksWriter();
 
     @Override
     public SimulationResult run(SimulationConfig config) {
-        Grid grid = gridLoader.load(config.gridPath());
+        try (SimulationSession session = new SimulationSession(config.gridPath())) {
+            return run(config, session);
+        }
+    }
+
+    @Override
+    public SimulationResult run(SimulationConfig config, SimulationSession session) {
+        session.checkConfig(config);
+        Grid grid = session.grid();
 
         int n = config.vehicles();
         int ticks = config.ticks();
-        VehicleState vehicles = new VehicleState(n);
-
-        Occupancy occA = new Occupancy(grid.cellCount());
-        Occupancy occB = new Occupancy(grid.cellCount());
-        int[] occ = occA.array();
-        int[] occNext = occB.array();
-
-        TrafficLight[] lights = buildLights(grid, config.lightPeriod());
+        VehicleState vehicles = session.vehicles(n);
 
-        initializer.initialize(grid, config.seed(), n, vehicles, occ);
+        long[] occA = session.occupancyA();
+        long[] occB = session.occupancyB();
+        long[] occ = occA;
+        long[] occNext = occB;
 
-        int[] propTargetCell = new int[n];
-        int[] propTargetDir = new int[n];
-        boolean[] propCanMove = new boolean[n];
+        LightProgram lights = session.lights(config);
 
-        int[] winners = new int[grid.cellCount() * 4];
-        int[] axisMin = new int[grid.cellCount() * 2];
-        int[] axisWinner = new int[grid.cellCount()];
-
-        MetricsCollector metrics = new MetricsCollector(ticks);
-
-        Instant start = Instant.now();
-        long startNs = System.nanoTime();
-        System.out.println("[" + start + "] START SEQUENTIAL run grid=" + config.gridPath() + " N=" + n + " ticks=" + ticks + " seed=" + config.seed());
-
-        for (int tick = 0; tick < ticks; tick++) {
-            updateLights(lights, tick);
-
-            computeProposals(grid, lights, vehicles, occ, config, tick, propTargetCell, propTargetDir, propCanMove);
-            resolveWinnersWithAxisExclusion(n, propTargetCell, propTargetDir, propCanMove, winners, axisMin, axisWinner);
-            int[] swapped = applyMoves(grid, vehicles, occ, occNext, n, propTargetCell, propTargetDir, propCanMove, winners, tick, metrics);
-            occ = swapped;
-            occNext = (occ == occA.array()) ? occB.array() : occA.array();
+        Checkpointer checkpoints = new Checkpointer(config, grid);
+        Checkpoint resumed = checkpoints.resume();
+        if (resumed != null) {
+            resumed.restoreVehicles(vehicles, occ);
+        } else {
+            initializer.initialize(grid, config.seed(), n, vehicles, occ);
         }
+        int startTick = Checkpointer.startTick(resumed);
+
+        int[] propTargetNode = session.propTargetNode(n);
+        int[] propTargetDir = session.propTargetDir(n);
+        boolean[] propCanMove = session.propCanMove(n);
 
-        long elapsedMs = (System.nanoTime() - startNs) / 1_000_000L;
-        Instant end = Instant.now();
-        System.out.println("[" + end + "] END SEQUENTIAL run elapsed=" + elapsedMs + " ms");
+        int stampBase = session.reserveStamps(ticks);
+        StampedWinners winners = session.stampedWinners();
 
-        double avgFlow = metrics.avgFlow(ticks);
-        double avgStopped = metrics.avgStopped(ticks);
+        try (checkpoints; TickOutput output = new TickOutput(config, TickOutput.defaultPath(config), grid, vehicles, session.tickListener())) {
+            MetricsCollector metrics = output.metrics();
+            if (resumed != null) {
+                checkpoints.restoreMetrics(resumed, metrics);
+            }
+            TrajectoryWriter.Lane trajectory = output.trajectoryLane();
+            ActiveSet activeSet = config.sleepBlocked() ? new ActiveSet(n, grid.nodeCount(), lights.maxCycle()) : null;
+
+            Instant start = Instant.now();
+            long startNs = System.nanoTime();
+            session.log("[" + start + "] START SEQUENTIAL run grid=" + config.gridPath() + " N=" + n + " ticks=" + ticks + " seed=" + config.seed());
+
+            int reorderEvery = config.reorderInterval();
+            for (int tick = startTick; tick < ticks; tick++) {
+                if (reorderEvery > 0 && tick > 0 && tick % reorderEvery == 0) {
+                    vehicles.reorderByNode(grid.nodeCount());
+                    if (activeSet != null) {
+                        activeSet.reset();
+                    }
+                }
 
-        System.out.println("MODE: SEQUENTIAL");
-        System.out.println("N=" + n + " ticks=" + ticks + " moved_avg=" + avgFlow + " stopped_avg=" + avgStopped + " time_ms=" + elapsedMs);
+                if (activeSet != null) {
+                    activeSet.wakeDue(tick);
+                    activeSet.computeProposals(grid, lights, vehicles, occ, config, tick, propTargetNode, propTargetDir, propCanMove);
+                } else {
+                    computeProposals(grid, lights, vehicles, occ, config, tick, propTargetNode, propTargetDir, propCanMove);
+                }
+                int stamp = stampBase + tick + 1;
+                winners.resolve(n, vehicles.idArray(), propTargetNode, propTargetDir, propCanMove, stamp);
+                long[] swapped = applyMoves(grid, vehicles, occ, occNext, n, propTargetNode, propTargetDir, propCanMove, winners, stamp, tick, metrics, trajectory);
+                if (activeSet != null) {
+                    activeSet.wakeDeparted(vehicles.nodeIdxArray());
+                }
+                occ = swapped;
+                occNext = (occ == occA) ? occB : occA;
+                if (checkpoints.due(tick + 1)) {
+                    checkpoints.save(tick + 1, vehicles, metrics);
+                }
+            }
 
-        if (config.writeTicksCsv()) {
-            Path outTicks = (config.outTicksCsv() != null)
-                    ? config.outTicksCsv()
-                    : defaultTicksPath(config.mode(), n, ticks, config.threads());
-            csvTicksWriter.write(outTicks, metrics.movedPerTick(), metrics.stoppedPerTick());
-        }
+            long elapsedMs = (System.nanoTime() - startNs) / 1_000_000L;
+            Instant end = Instant.now();
+            session.log("[" + end + "] END SEQUENTIAL run elapsed=" + elapsedMs + " ms");
 
-        return new SimulationResult(RunMode.SEQUENTIAL, n, ticks, 1, elapsedMs, avgFlow, avgStopped);
-    }
+            double avgFlow = metrics.avgFlow(ticks);
+            double avgStopped = metrics.avgStopped(ticks);
 
-    private static Path defaultTicksPath(RunMode mode, int n, int ticks, int threads) {
-        String m = (mode == RunMode.PARALLEL) ? "par" : "seq";
-        String p = (mode == RunMode.PARALLEL) ? ("_P" + threads) : "";
-        return Path.of("data", "ticks_" + m + "_N" + n + "_T" + ticks + p + ".csv");
-    }
+            session.log("MODE: SEQUENTIAL");
+            session.log("N=" + n + " ticks=" + ticks + " moved_avg=" + avgFlow + " stopped_avg=" + avgStopped + " time_ms=" + elapsedMs);
 
-    private static TrafficLight[] buildLights(Grid grid, int period) {
-        TrafficLight[] lights = new TrafficLight[grid.intersectionCount()];
-        for (int i = 0; i < lights.length; i++) {
-            lights[i] = new TrafficLight(period, TrafficLightState.H_GREEN);
-        }
-        return lights;
-    }
+            output.finish();
 
-    private static void updateLights(TrafficLight[] lights, int tick) {
-        for (TrafficLight l : lights) {
-            l.update(tick);
+            return new SimulationResult(RunMode.SEQUENTIAL, n, ticks, 1, elapsedMs, avgFlow, avgStopped);
         }
     }
 
-    private static void computeProposals(
+    static void computeProposals(
             Grid grid,
-            TrafficLight[] lights,
+            LightProgram lights,
             VehicleState vehicles,
-            int[] occ,
+            long[] occ,
             SimulationConfig config,
             int tick,
-            int[] propTargetCell,
+            int[] propTargetNode,
             int[] propTargetDir,
             boolean[] propCanMove
     ) {
@@ -121,121 +129,67 @@ public final class SequentialEngine implements SimulationEngine {
                     config,
                     tick,
                     i,
-                    propTargetCell,
+                    propTargetNode,
                     propTargetDir,
                     propCanMove
             );
         }
     }
 
-    private static void resolveWinnersWithAxisExclusion(
-            int n,
-            int[] propTargetCell,
-            int[] propTargetDir,
-            boolean[] propCanMove,
-            int[] winners,
-            int[] axisMin,
-            int[] axisWinner
-    ) {
-        Arrays.fill(winners, -1);
-        Arrays.fill(axisWinner, -1);
-        Arrays.fill(axisMin, Integer.MAX_VALUE);
-
-        for (int i = 0; i < n; i++) {
-            if (!propCanMove[i]) {
-                continue;
-            }
-            int cell = propTargetCell[i];
-            int dirIdx = propTargetDir[i];
-            int axis = Direction.fromIndex(dirIdx).isHorizontal() ? 0 : 1;
-            int k = cell * 2 + axis;
-            if (i < axisMin[k]) {
-                axisMin[k] = i;
-            }
-        }
-
-        for (int cell = 0; cell < axisWinner.length; cell++) {
-            int hMin = axisMin[cell * 2];
-            int vMin = axisMin[cell * 2 + 1];
-            if (hMin == Integer.MAX_VALUE && vMin == Integer.MAX_VALUE) {
-                continue;
-            }
-            if (vMin == Integer.MAX_VALUE || hMin < vMin) {
-                axisWinner[cell] = 0;
-            } else {
-                axisWinner[cell] = 1;
-            }
-        }
-
-        for (int i = 0; i < n; i++) {
-            if (!propCanMove[i]) {
-                continue;
-            }
-            int cell = propTargetCell[i];
-            int dirIdx = propTargetDir[i];
-            int axis = Direction.fromIndex(dirIdx).isHorizontal() ? 0 : 1;
-            if (axisWinner[cell] != axis) {
-                continue;
-            }
-
-            int key = cell * 4 + dirIdx;
-            int w = winners[key];
-            if (w == -1 || i < w) {
-                winners[key] = i;
-            }
-        }
-    }
-
-    private static int[] applyMoves(
+    static long[] applyMoves(
             Grid grid,
             VehicleState vehicles,
-            int[] occ,
-            int[] occNext,
+            long[] occ,
+            long[] occNext,
             int n,
-            int[] propTargetCell,
+            int[] propTargetNode,
             int[] propTargetDir,
             boolean[] propCanMove,
-            int[] winners,
+            StampedWinners winners,
+            int stamp,
             int tick,
-            MetricsCollector metrics
+            MetricsCollector metrics,
+            TrajectoryWriter.Lane trajectory
     ) {
-        Occupancy.clearAll(occNext);
-
         int moved = 0;
         int stopped = 0;
 
-        int[] cellArr = vehicles.cellIdxArray();
+        int[] nodeArr = vehicles.nodeIdxArray();
         int[] dirArr = vehicles.dirIdxArray();
+        int[] ids = vehicles.idArray();
 
         for (int i = 0; i < n; i++) {
-            int cell = cellArr[i];
+            int node = nodeArr[i];
             int dirIdx = dirArr[i];
 
-            int nextCell = cell;
+            int nextNode = node;
             int nextDirIdx = dirIdx;
 
             if (propCanMove[i]) {
-                int key = propTargetCell[i] * 4 + propTargetDir[i];
-                if (winners[key] == i) {
-                    nextCell = propTargetCell[i];
+                if (winners.wins(propTargetNode[i], propTargetDir[i], ids[i], stamp)) {
+                    nextNode = propTargetNode[i];
                     nextDirIdx = propTargetDir[i];
                 }
             }
 
-            if (nextCell != cell) {
+            if (nextNode != node) {
                 moved++;
+                if (trajectory != null) {
+                    trajectory.record(tick, ids[i], nextDirIdx);
+                }
             } else {
                 stopped++;
             }
 
-            cellArr[i] = nextCell;
+            nodeArr[i] = nextNode;
             dirArr[i] = nextDirIdx;
 
-            int nextKey = nextCell * 4 + nextDirIdx;
-            if (occNext[nextKey] != -1) {
-                throw new IllegalStateException("Double-occupancy at tick=" + tick + " cellIdx=" + nextCell + " dirIdx=" + nextDirIdx);
+            PackedOccupancy.clear(occ, node, dirIdx);
+
+            if (PackedOccupancy.isSet(occNext, nextNode, nextDirIdx)) {
+                throw new IllegalStateException("Double-occupancy at tick=" + tick + " cellIdx=" + grid.cellOfNode(nextNode) + " dirIdx=" + nextDirIdx);
             }
-            occNext[nextKey] = i;
+            PackedOccupancy.set(occNext, nextNode, nextDirIdx);
         }
 
         metrics.record(tick, moved, stopped);
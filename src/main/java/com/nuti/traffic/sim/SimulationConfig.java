@@ -2,6 +2,8 @@ package com.nuti.traffic.sim;
 
 import java.nio.file.Path;
 
+// Build with one of the short constructors and add options with the with* copies, e.g.
+// new SimulationConfig(grid, n, ticks, seed, turnProb, period, mode, threads, null, false).withLightsFile(lights).
 public record SimulationConfig(
         Path gridPath,
         int vehicles,
@@ -12,9 +14,32 @@ public record SimulationConfig(
         RunMode mode,
         int threads,
         Path outTicksCsv,
-        boolean writeTicksCsv
+        boolean writeTicksCsv,
+        int reorderInterval,
+        boolean sleepBlocked,
+        Path lightsFile,
+        boolean streamTicks,
+        Path trajectoryFile,
+        Path checkpointFile,
+        int checkpointInterval,
+        boolean resume
 ) {
 
+    public SimulationConfig(
+            Path gridPath,
+            int vehicles,
+            int ticks,
+            long seed,
+            double turnProb,
+            int lightPeriod,
+            RunMode mode,
+            int threads,
+            Path outTicksCsv,
+            boolean writeTicksCsv
+    ) {
+        this(gridPath, vehicles, ticks, seed, turnProb, lightPeriod, mode, threads, outTicksCsv, writeTicksCsv, 0, false, null, false, null, null, 0, false);
+    }
+
     public SimulationConfig(
             Path gridPath,
             int vehicles,
@@ -28,4 +53,76 @@ public record SimulationConfig(
     ) {
         this(gridPath, vehicles, ticks, seed, turnProb, lightPeriod, mode, threads, outTicksCsv, true);
     }
+
+    // Same run on another engine.
+    public SimulationConfig withMode(RunMode mode, int threads) {
+        return new SimulationConfig(
+                gridPath, vehicles, ticks, seed, turnProb, lightPeriod, mode, threads, outTicksCsv, writeTicksCsv,
+                reorderInterval, sleepBlocked, lightsFile, streamTicks, trajectoryFile, checkpointFile,
+                checkpointInterval, resume);
+    }
+
+    public SimulationConfig withTicks(int ticks) {
+        return new SimulationConfig(
+                gridPath, vehicles, ticks, seed, turnProb, lightPeriod, mode, threads, outTicksCsv, writeTicksCsv,
+                reorderInterval, sleepBlocked, lightsFile, streamTicks, trajectoryFile, checkpointFile,
+                checkpointInterval, resume);
+    }
+
+    public SimulationConfig withTicksCsv(Path outTicksCsv, boolean writeTicksCsv) {
+        return new SimulationConfig(
+                gridPath, vehicles, ticks, seed, turnProb, lightPeriod, mode, threads, outTicksCsv, writeTicksCsv,
+                reorderInterval, sleepBlocked, lightsFile, streamTicks, trajectoryFile, checkpointFile,
+                checkpointInterval, resume);
+    }
+
+    public SimulationConfig withReorderInterval(int reorderInterval) {
+        return new SimulationConfig(
+                gridPath, vehicles, ticks, seed, turnProb, lightPeriod, mode, threads, outTicksCsv, writeTicksCsv,
+                reorderInterval, sleepBlocked, lightsFile, streamTicks, trajectoryFile, checkpointFile,
+                checkpointInterval, resume);
+    }
+
+    public SimulationConfig withSleepBlocked(boolean sleepBlocked) {
+        return new SimulationConfig(
+                gridPath, vehicles, ticks, seed, turnProb, lightPeriod, mode, threads, outTicksCsv, writeTicksCsv,
+                reorderInterval, sleepBlocked, lightsFile, streamTicks, trajectoryFile, checkpointFile,
+                checkpointInterval, resume);
+    }
+
+    public SimulationConfig withLightsFile(Path lightsFile) {
+        return new SimulationConfig(
+                gridPath, vehicles, ticks, seed, turnProb, lightPeriod, mode, threads, outTicksCsv, writeTicksCsv,
+                reorderInterval, sleepBlocked, lightsFile, streamTicks, trajectoryFile, checkpointFile,
+                checkpointInterval, resume);
+    }
+
+    public SimulationConfig withStreamTicks(boolean streamTicks) {
+        return new SimulationConfig(
+                gridPath, vehicles, ticks, seed, turnProb, lightPeriod, mode, threads, outTicksCsv, writeTicksCsv,
+                reorderInterval, sleepBlocked, lightsFile, streamTicks, trajectoryFile, checkpointFile,
+                checkpointInterval, resume);
+    }
+
+    public SimulationConfig withTrajectoryFile(Path trajectoryFile) {
+        return new SimulationConfig(
+                gridPath, vehicles, ticks, seed, turnProb, lightPeriod, mode, threads, outTicksCsv, writeTicksCsv,
+                reorderInterval, sleepBlocked, lightsFile, streamTicks, trajectoryFile, checkpointFile,
+                checkpointInterval, resume);
+    }
+
+    // An interval of 0 writes no checkpoints; the file is still the one resume reads.
+    public SimulationConfig withCheckpoint(Path checkpointFile, int checkpointInterval) {
+        return new SimulationConfig(
+                gridPath, vehicles, ticks, seed, turnProb, lightPeriod, mode, threads, outTicksCsv, writeTicksCsv,
+                reorderInterval, sleepBlocked, lightsFile, streamTicks, trajectoryFile, checkpointFile,
+                checkpointInterval, resume);
+    }
+
+    public SimulationConfig withResume(boolean resume) {
+        return new SimulationConfig(
+                gridPath, vehicles, ticks, seed, turnProb, lightPeriod, mode, threads, outTicksCsv, writeTicksCsv,
+                reorderInterval, sleepBlocked, lightsFile, streamTicks, trajectoryFile, checkpointFile,
+                checkpointInterval, resume);
+    }
 }
@@ -2,4 +2,6 @@ package com.nuti.traffic.sim;
 
 public interface SimulationEngine {
     SimulationResult run(SimulationConfig config);
+
+    SimulationResult run(SimulationConfig config, SimulationSession session);
 }
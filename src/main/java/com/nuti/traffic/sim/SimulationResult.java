@@ -7,6 +7,23 @@ public record SimulationResult(
         int threads,
         long timeMs,
         double avgFlow,
-        double avgStopped
+        double avgStopped,
+        EngineDecision decision
 ) {
+
+    public SimulationResult(
+            RunMode mode,
+            int vehicles,
+            int ticks,
+            int threads,
+            long timeMs,
+            double avgFlow,
+            double avgStopped
+    ) {
+        this(mode, vehicles, ticks, threads, timeMs, avgFlow, avgStopped, null);
+    }
+
+    public SimulationResult withDecision(EngineDecision decision) {
+        return new SimulationResult(mode, vehicles, ticks, threads, timeMs, avgFlow, avgStopped, decision);
+    }
 }
@@ -0,0 +1,290 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.grid.GridLoader;
+import com.nuti.traffic.grid.LightProgramLoader;
+import com.nuti.traffic.io.TickSink;
+import com.nuti.traffic.model.Grid;
+import com.nuti.traffic.model.LightProgram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Not thread-safe: runs sharing a session must execute one after another.
+public final class SimulationSession implements AutoCloseable {
+
+    private final Path gridPath;
+    private final Grid grid;
+
+    private final long[] occA;
+    private final long[] occB;
+    private int[] idOcc;
+    private WinnerSlots slots;
+    private int stampBase;
+
+    private VehicleState vehicles;
+    private int[] propTargetNode = new int[0];
+    private int[] propTargetDir = new int[0];
+    private boolean[] propCanMove = new boolean[0];
+
+    private StampedWinners stampedWinners;
+
+    // Lockstep replica buffers, sized nodeCount * replicas (see ReplicaBatchEngine).
+    private int replicas;
+    private long[] replicaOccA;
+    private long[] replicaOccB;
+    private StampedWinners replicaWinners;
+
+    private TickSink tickListener;
+    private boolean quiet;
+
+    private LightProgram lights;
+    private Path lightsFile;
+    private String lightsVersion;
+    private int lightPeriod;
+
+    private ExecutorService pool;
+    private int poolSize;
+    private ForkJoinPool forkJoinPool;
+
+    public SimulationSession(Path gridPath) {
+        this(gridPath, new GridLoader().load(gridPath));
+    }
+
+    public SimulationSession(Path gridPath, Grid grid) {
+        this.gridPath = gridPath;
+        this.grid = grid;
+        this.occA = PackedOccupancy.create(grid.nodeCount());
+        this.occB = PackedOccupancy.create(grid.nodeCount());
+    }
+
+    public Path gridPath() {
+        return gridPath;
+    }
+
+    public Grid grid() {
+        return grid;
+    }
+
+    // Receives the per-tick metrics of every later run on this session, in addition to the configured ticks output.
+    public void setTickListener(TickSink listener) {
+        this.tickListener = listener;
+    }
+
+    TickSink tickListener() {
+        return tickListener;
+    }
+
+    // Drops the START/END and summary lines of every later run on this session, for callers that run many short
+    // simulations and report each one themselves.
+    public void setQuiet(boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    void log(String line) {
+        if (!quiet) {
+            System.out.println(line);
+        }
+    }
+
+    void checkConfig(SimulationConfig config) {
+        if (config.gridPath() != null && gridPath != null && !config.gridPath().equals(gridPath)) {
+            throw new IllegalArgumentException("Config grid " + config.gridPath() + " does not match session grid " + gridPath);
+        }
+    }
+
+    // A lights file is reloaded when its modification time or size changes, so long-lived sessions see edits.
+    LightProgram lights(SimulationConfig config) {
+        String version = (config.lightsFile() != null) ? fileVersion(config.lightsFile()) : null;
+        if (lights == null || !Objects.equals(lightsFile, config.lightsFile()) || !Objects.equals(lightsVersion, version)
+                || (config.lightsFile() == null && lightPeriod != config.lightPeriod())) {
+            lights = (config.lightsFile() != null)
+                    ? new LightProgramLoader().load(config.lightsFile(), grid)
+                    : LightProgram.uniform(grid.intersectionCount(), config.lightPeriod());
+            lightsFile = config.lightsFile();
+            lightsVersion = version;
+            lightPeriod = config.lightPeriod();
+        }
+        return lights;
+    }
+
+    private static String fileVersion(Path file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return attrs.lastModifiedTime().toMillis() + "|" + attrs.size();
+        } catch (IOException e) {
+            // Unreadable: the loader reports the error.
+            return null;
+        }
+    }
+
+    long[] occupancyA() {
+        PackedOccupancy.clearAll(occA);
+        return occA;
+    }
+
+    long[] occupancyB() {
+        PackedOccupancy.clearAll(occB);
+        return occB;
+    }
+
+    // Id-carrying occupancy, only for engines that must find the vehicle parked in a slot.
+    int[] idOccupancy() {
+        if (idOcc == null) {
+            idOcc = new Occupancy(grid.nodeCount()).array();
+        }
+        Occupancy.clearAll(idOcc);
+        return idOcc;
+    }
+
+    VehicleState vehicles(int n) {
+        if (vehicles == null || vehicles.vehicleCount() != n) {
+            vehicles = new VehicleState(n);
+        }
+        return vehicles;
+    }
+
+    int[] propTargetNode(int n) {
+        if (propTargetNode.length != n) {
+            propTargetNode = new int[n];
+        }
+        return propTargetNode;
+    }
+
+    int[] propTargetDir(int n) {
+        if (propTargetDir.length != n) {
+            propTargetDir = new int[n];
+        }
+        return propTargetDir;
+    }
+
+    boolean[] propCanMove(int n) {
+        if (propCanMove.length != n) {
+            propCanMove = new boolean[n];
+        } else {
+            Arrays.fill(propCanMove, false);
+        }
+        return propCanMove;
+    }
+
+    StampedWinners stampedWinners() {
+        if (stampedWinners == null) {
+            stampedWinners = new StampedWinners(grid.nodeCount());
+        }
+        return stampedWinners;
+    }
+
+    long[] replicaOccupancyA(int k) {
+        ensureReplicas(k);
+        PackedOccupancy.clearAll(replicaOccA);
+        return replicaOccA;
+    }
+
+    long[] replicaOccupancyB(int k) {
+        ensureReplicas(k);
+        PackedOccupancy.clearAll(replicaOccB);
+        return replicaOccB;
+    }
+
+    StampedWinners replicaWinners(int k) {
+        ensureReplicas(k);
+        if (replicaWinners == null) {
+            replicaWinners = new StampedWinners(grid.nodeCount() * k);
+        }
+        return replicaWinners;
+    }
+
+    private void ensureReplicas(int k) {
+        if (replicas == k) {
+            return;
+        }
+        if ((long) grid.nodeCount() * k > Integer.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("Grid has " + grid.nodeCount() + " nodes, too many for " + k + " replicas in one batch");
+        }
+        replicas = k;
+        replicaOccA = PackedOccupancy.create(grid.nodeCount() * k);
+        replicaOccB = PackedOccupancy.create(grid.nodeCount() * k);
+        replicaWinners = null;
+    }
+
+    WinnerSlots winnerSlots() {
+        if (slots == null) {
+            slots = new WinnerSlots(grid.nodeCount());
+        }
+        return slots;
+    }
+
+    int reserveStamps(int ticks) {
+        if (stampBase > Integer.MAX_VALUE - ticks - 1) {
+            slots = null;
+            stampedWinners = null;
+            replicaWinners = null;
+            stampBase = 0;
+        }
+        int base = stampBase;
+        stampBase += ticks;
+        return base;
+    }
+
+    ExecutorService workerPool(int threads) {
+        if (pool == null || poolSize < threads) {
+            shutdownPool();
+            pool = Executors.newFixedThreadPool(Math.max(1, threads), new WorkerThreadFactory());
+            poolSize = threads;
+        }
+        return pool;
+    }
+
+    ForkJoinPool forkJoinPool(int parallelism) {
+        if (forkJoinPool == null || forkJoinPool.getParallelism() != parallelism) {
+            if (forkJoinPool != null) {
+                forkJoinPool.shutdown();
+            }
+            forkJoinPool = new ForkJoinPool(parallelism);
+        }
+        return forkJoinPool;
+    }
+
+    @Override
+    public void close() {
+        shutdownPool();
+        if (forkJoinPool != null) {
+            forkJoinPool.shutdown();
+            forkJoinPool = null;
+        }
+    }
+
+    private void shutdownPool() {
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pool = null;
+        poolSize = 0;
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "traffic-worker-" + COUNTER.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
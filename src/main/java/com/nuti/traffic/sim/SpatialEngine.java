@@ -0,0 +1,379 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.io.TrajectoryWriter;
+import com.nuti.traffic.model.Grid;
+import com.nuti.traffic.model.LightProgram;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicReference;
+
+public final class SpatialEngine implements SimulationEngine {
+
+    // A vehicle moves at most one row per tick, so two halo rows on each side are enough to
+    // evaluate every proposal that can target the strip's own rows or the row just outside them.
+    private static final int HALO_ROWS = 2;
+    static final int MIN_STRIP_ROWS = 2;
+
+    private final VehicleInitializer initializer = new VehicleInitializer();
+
+    @Override
+    public SimulationResult run(SimulationConfig config) {
+        try (SimulationSession session = new SimulationSession(config.gridPath())) {
+            return run(config, session);
+        }
+    }
+
+    @Override
+    public SimulationResult run(SimulationConfig config, SimulationSession session) {
+        int threads = config.threads();
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be > 0");
+        }
+
+        session.checkConfig(config);
+        Grid grid = session.grid();
+
+        int n = config.vehicles();
+        int ticks = config.ticks();
+        VehicleState vehicles = session.vehicles(n);
+        int[] occ = session.idOccupancy();
+
+        LightProgram lights = session.lights(config);
+        Checkpointer checkpoints = new Checkpointer(config, grid);
+        Checkpoint resumed = checkpoints.resume();
+        int startTick = Checkpointer.startTick(resumed);
+        if (resumed != null) {
+            resumed.restoreVehicles(vehicles, occ);
+        } else {
+            initializer.initialize(grid, config.seed(), n, vehicles, occ);
+        }
+
+        int stripCount = Math.max(1, Math.min(threads, grid.height() / MIN_STRIP_ROWS));
+        Strip[] strips = new Strip[stripCount];
+        for (int s = 0; s < stripCount; s++) {
+            int rowStart = s * grid.height() / stripCount;
+            int rowEnd = (s + 1) * grid.height() / stripCount;
+            strips[s] = new Strip(grid, rowStart, rowEnd);
+        }
+        for (int s = 0; s < stripCount; s++) {
+            strips[s].north = (s > 0) ? strips[s - 1] : null;
+            strips[s].south = (s + 1 < stripCount) ? strips[s + 1] : null;
+            strips[s].initialize(vehicles, occ, startTick);
+        }
+
+        ExecutorService pool = (stripCount > 1) ? session.workerPool(stripCount - 1) : null;
+        Future<?>[] pending = new Future<?>[stripCount];
+        MetricsCollector[] stripMetrics = new MetricsCollector[stripCount];
+        for (int s = 0; s < stripCount; s++) {
+            stripMetrics[s] = strips[s].metrics;
+        }
+        try (checkpoints; TickOutput output = new TickOutput(config, TickOutput.defaultPath(config), grid, vehicles, session.tickListener())) {
+            MetricsCollector metrics = output.metrics();
+            if (resumed != null) {
+                checkpoints.restoreMetrics(resumed, metrics);
+            }
+            for (Strip strip : strips) {
+                strip.trajectory = output.trajectoryLane();
+            }
+
+            Instant start = Instant.now();
+            session.log("[" + start + "] START SPATIAL run grid=" + config.gridPath() + " N=" + n + " ticks=" + ticks + " threads=" + config.threads() + " strips=" + stripCount + " seed=" + config.seed());
+
+            Phaser phaser = new Phaser(stripCount);
+            AtomicReference<Throwable> workerError = new AtomicReference<>();
+
+            Runnable[] workers = new Runnable[stripCount];
+            for (int s = 0; s < stripCount; s++) {
+                Strip strip = strips[s];
+                boolean leader = (s == 0);
+                workers[s] = () -> {
+                    try {
+                        for (int tick = startTick; tick < ticks; tick++) {
+                            strip.step(config, lights, tick);
+
+                            if (phaser.arriveAndAwaitAdvance() < 0) {
+                                return;
+                            }
+
+                            strip.exchange(tick);
+                            if (leader) {
+                                ParallelEngine.recordTick(metrics, stripMetrics, tick);
+                            }
+
+                            if (phaser.arriveAndAwaitAdvance() < 0) {
+                                return;
+                            }
+
+                            // Vehicles live in the strips' lists, so the snapshot needs every strip parked.
+                            if (checkpoints.due(tick + 1)) {
+                                if (leader) {
+                                    saveCheckpoint(checkpoints, tick + 1, strips, n, metrics);
+                                }
+                                if (phaser.arriveAndAwaitAdvance() < 0) {
+                                    return;
+                                }
+                            }
+                        }
+                    } catch (Throwable t2) {
+                        workerError.compareAndSet(null, t2);
+                        phaser.forceTermination();
+                    }
+                };
+            }
+
+            long startNs = System.nanoTime();
+
+            for (int s = 1; s < stripCount; s++) {
+                pending[s] = pool.submit(workers[s]);
+            }
+            workers[0].run();
+
+            Throwable t = workerError.get();
+            if (t != null) {
+                throw new RuntimeException(t);
+            }
+            if (phaser.isTerminated()) {
+                throw new IllegalStateException("Worker phaser terminated unexpectedly");
+            }
+
+            long elapsedMs = (System.nanoTime() - startNs) / 1_000_000L;
+            Instant end = Instant.now();
+            session.log("[" + end + "] END SPATIAL run elapsed=" + elapsedMs + " ms");
+
+            double avgFlow = metrics.avgFlow(ticks);
+            double avgStopped = metrics.avgStopped(ticks);
+
+            session.log("MODE: SPATIAL");
+            session.log("N=" + n + " ticks=" + ticks + " threads=" + config.threads() + " moved_avg=" + avgFlow + " stopped_avg=" + avgStopped + " time_ms=" + elapsedMs);
+
+            output.finish();
+
+            return new SimulationResult(RunMode.SPATIAL, n, ticks, config.threads(), elapsedMs, avgFlow, avgStopped);
+        } finally {
+            ParallelEngine.awaitWorkers(pending);
+        }
+    }
+
+    private static void saveCheckpoint(Checkpointer checkpoints, int nextTick, Strip[] strips, int n, MetricsCollector metrics) {
+        int[] nodes = new int[n];
+        int[] dirs = new int[n];
+        int[] ids = new int[n];
+        for (Strip strip : strips) {
+            VehicleList own = strip.own;
+            for (int k = 0; k < own.count; k++) {
+                int id = own.ids[k];
+                nodes[id] = own.nodes[k];
+                dirs[id] = own.dirs[k];
+                ids[id] = id;
+            }
+        }
+        checkpoints.save(nextTick, nodes, dirs, ids, metrics);
+    }
+
+    private static final class Strip {
+
+        private final Grid grid;
+        private final int baseNode;
+        private final int ownStartNode;
+        private final int ownEndNode;
+        private final int haloStartNode;
+        private final int haloEndNode;
+        private final int regionStartNode;
+        private final int regionEndNode;
+        private final int[][] occ;
+        private final WinnerSlots slots;
+        private final MetricsCollector metrics;
+        private final VehicleList own = new VehicleList();
+        private final VehicleList toNorth = new VehicleList();
+        private final VehicleList toSouth = new VehicleList();
+        private int[] propKeys = new int[0];
+        private TrajectoryWriter.Lane trajectory;
+
+        private Strip north;
+        private Strip south;
+
+        private Strip(Grid grid, int rowStart, int rowEnd) {
+            int haloStart = Math.max(0, rowStart - HALO_ROWS);
+            int haloEnd = Math.min(grid.height(), rowEnd + HALO_ROWS);
+
+            this.grid = grid;
+            this.baseNode = grid.rowNodeStart(haloStart);
+            this.ownStartNode = grid.rowNodeStart(rowStart);
+            this.ownEndNode = grid.rowNodeStart(rowEnd);
+            this.haloStartNode = grid.rowNodeStart(haloStart);
+            this.haloEndNode = grid.rowNodeStart(haloEnd);
+            this.regionStartNode = grid.rowNodeStart(Math.max(haloStart, rowStart - 1));
+            this.regionEndNode = grid.rowNodeStart(Math.min(haloEnd, rowEnd + 1));
+
+            int localNodes = haloEndNode - haloStartNode;
+            this.occ = new int[][] { new Occupancy(localNodes).array(), new Occupancy(localNodes).array() };
+            this.slots = new WinnerSlots(localNodes);
+            this.metrics = new MetricsCollector();
+        }
+
+        private void initialize(VehicleState vehicles, int[] globalOcc, int startTick) {
+            System.arraycopy(globalOcc, haloStartNode * 4, occ[startTick & 1], 0, occ[0].length);
+
+            for (int i = 0; i < vehicles.vehicleCount(); i++) {
+                int node = vehicles.nodeIdx(i);
+                if (node >= ownStartNode && node < ownEndNode) {
+                    own.add(vehicles.id(i), node, vehicles.dirIdx(i));
+                }
+            }
+            propKeys = new int[own.ids.length];
+        }
+
+        private void step(SimulationConfig config, LightProgram lights, int tick) {
+            int[] cur = occ[tick & 1];
+            int[] next = occ[(tick + 1) & 1];
+
+            if (north != null) {
+                copyNodes(north, north.occ[tick & 1], haloStartNode, ownStartNode, cur);
+            }
+            if (south != null) {
+                copyNodes(south, south.occ[tick & 1], ownEndNode, haloEndNode, cur);
+            }
+            Arrays.fill(next, (ownStartNode - baseNode) * 4, (ownEndNode - baseNode) * 4, -1);
+            toNorth.clear();
+            toSouth.clear();
+
+            int stamp = tick + 1;
+            int localKeyBase = baseNode * 4;
+
+            for (int k = 0; k < own.count; k++) {
+                int key = MoveRules.proposeKey(grid, lights, cur, baseNode, regionStartNode, regionEndNode, config, tick, own.ids[k], own.nodes[k], own.dirs[k]);
+                propKeys[k] = key;
+                if (key >= 0) {
+                    slots.propose(key - localKeyBase, own.ids[k], stamp);
+                }
+            }
+            proposeGhosts(config, lights, cur, tick, haloStartNode, ownStartNode);
+            proposeGhosts(config, lights, cur, tick, ownEndNode, haloEndNode);
+
+            int moved = 0;
+            int stopped = 0;
+            int kept = 0;
+
+            for (int k = 0; k < own.count; k++) {
+                int id = own.ids[k];
+                int node = own.nodes[k];
+                int dirIdx = own.dirs[k];
+
+                int nextNode = node;
+                int nextDirIdx = dirIdx;
+
+                int key = propKeys[k];
+                if (key >= 0) {
+                    int targetNode = key / 4;
+                    int targetDir = key % 4;
+                    if (slots.wins(targetNode - baseNode, targetDir, id, stamp)) {
+                        nextNode = targetNode;
+                        nextDirIdx = targetDir;
+                    }
+                }
+
+                if (nextNode != node) {
+                    moved++;
+                    if (trajectory != null) {
+                        trajectory.record(tick, id, nextDirIdx);
+                    }
+                } else {
+                    stopped++;
+                }
+
+                if (nextNode < ownStartNode) {
+                    toNorth.add(id, nextNode, nextDirIdx);
+                } else if (nextNode >= ownEndNode) {
+                    toSouth.add(id, nextNode, nextDirIdx);
+                } else {
+                    place(next, id, nextNode, nextDirIdx, tick);
+                    own.ids[kept] = id;
+                    own.nodes[kept] = nextNode;
+                    own.dirs[kept] = nextDirIdx;
+                    kept++;
+                }
+            }
+            own.count = kept;
+
+            metrics.record(tick, moved, stopped);
+        }
+
+        private void exchange(int tick) {
+            int[] next = occ[(tick + 1) & 1];
+            if (north != null) {
+                receive(north.toSouth, next, tick);
+            }
+            if (south != null) {
+                receive(south.toNorth, next, tick);
+            }
+        }
+
+        private void proposeGhosts(SimulationConfig config, LightProgram lights, int[] cur, int tick, int fromNode, int toNode) {
+            int stamp = tick + 1;
+            int localKeyBase = baseNode * 4;
+            for (int node = fromNode; node < toNode; node++) {
+                int base = (node - baseNode) * 4;
+                for (int d = 0; d < 4; d++) {
+                    int id = cur[base + d];
+                    if (id < 0) {
+                        continue;
+                    }
+                    int key = MoveRules.proposeKey(grid, lights, cur, baseNode, regionStartNode, regionEndNode, config, tick, id, node, d);
+                    if (key >= 0) {
+                        slots.propose(key - localKeyBase, id, stamp);
+                    }
+                }
+            }
+        }
+
+        private void receive(VehicleList migrants, int[] next, int tick) {
+            for (int k = 0; k < migrants.count; k++) {
+                place(next, migrants.ids[k], migrants.nodes[k], migrants.dirs[k], tick);
+                own.add(migrants.ids[k], migrants.nodes[k], migrants.dirs[k]);
+            }
+            if (propKeys.length < own.ids.length) {
+                propKeys = new int[own.ids.length];
+            }
+        }
+
+        private void place(int[] next, int id, int node, int dirIdx, int tick) {
+            int key = (node - baseNode) * 4 + dirIdx;
+            if (next[key] != -1) {
+                throw new IllegalStateException("Double-occupancy at tick=" + tick + " cellIdx=" + grid.cellOfNode(node) + " dirIdx=" + dirIdx);
+            }
+            next[key] = id;
+        }
+
+        private void copyNodes(Strip from, int[] src, int fromNode, int toNode, int[] dst) {
+            System.arraycopy(src, (fromNode - from.baseNode) * 4, dst, (fromNode - baseNode) * 4, (toNode - fromNode) * 4);
+        }
+    }
+
+    private static final class VehicleList {
+        private int[] ids = new int[16];
+        private int[] nodes = new int[16];
+        private int[] dirs = new int[16];
+        private int count;
+
+        private void add(int id, int node, int dirIdx) {
+            if (count == ids.length) {
+                int cap = ids.length * 2;
+                ids = Arrays.copyOf(ids, cap);
+                nodes = Arrays.copyOf(nodes, cap);
+                dirs = Arrays.copyOf(dirs, cap);
+            }
+            ids[count] = id;
+            nodes[count] = node;
+            dirs[count] = dirIdx;
+            count++;
+        }
+
+        private void clear() {
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.model.Direction;
+
+// Single-threaded counterpart of WinnerSlots: an entry only counts when its stamp equals the current tick's stamp,
+// so resolving a tick touches the proposers' keys and nothing else.
+final class StampedWinners {
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final int[] keyStamp;
+    private final int[] winners;
+    private final int[] nodeStamp;
+    private final int[] axisMin;
+
+    StampedWinners(int nodeCount) {
+        this.keyStamp = new int[nodeCount * 4];
+        this.winners = new int[nodeCount * 4];
+        this.nodeStamp = new int[nodeCount];
+        this.axisMin = new int[nodeCount * 2];
+    }
+
+    void resolve(int n, int[] ids, int[] propTargetNode, int[] propTargetDir, boolean[] propCanMove, int stamp) {
+        for (int i = 0; i < n; i++) {
+            if (!propCanMove[i]) {
+                continue;
+            }
+            int node = propTargetNode[i];
+            if (nodeStamp[node] != stamp) {
+                nodeStamp[node] = stamp;
+                axisMin[node * 2] = NONE;
+                axisMin[node * 2 + 1] = NONE;
+            }
+            int k = node * 2 + (Direction.isHorizontalIndex(propTargetDir[i]) ? 0 : 1);
+            if (ids[i] < axisMin[k]) {
+                axisMin[k] = ids[i];
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (!propCanMove[i]) {
+                continue;
+            }
+            int node = propTargetNode[i];
+            int dirIdx = propTargetDir[i];
+            int hMin = axisMin[node * 2];
+            int vMin = axisMin[node * 2 + 1];
+            boolean horizontalWins = vMin == NONE || hMin < vMin;
+            if (Direction.isHorizontalIndex(dirIdx) != horizontalWins) {
+                continue;
+            }
+
+            int key = node * 4 + dirIdx;
+            if (keyStamp[key] != stamp || ids[i] < winners[key]) {
+                keyStamp[key] = stamp;
+                winners[key] = ids[i];
+            }
+        }
+    }
+
+    boolean wins(int node, int dirIdx, int vehicleId, int stamp) {
+        int key = node * 4 + dirIdx;
+        return keyStamp[key] == stamp && winners[key] == vehicleId;
+    }
+}
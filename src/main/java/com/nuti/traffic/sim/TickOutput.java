@@ -0,0 +1,148 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.io.ColumnarFormat;
+import com.nuti.traffic.io.ColumnarTicksWriter;
+import com.nuti.traffic.io.CsvTicksWriter;
+import com.nuti.traffic.io.StreamingTicksWriter;
+import com.nuti.traffic.io.TickSink;
+import com.nuti.traffic.io.TrajectoryWriter;
+import com.nuti.traffic.model.Grid;
+
+import java.nio.file.Path;
+
+// Where an engine's per-tick series goes: nowhere (totals only), into memory and a CSV after the run, streamed to
+// the CSV while the run is in progress (streamTicks), or into a memory-mapped .tcol file as ticks close.
+// Also owns the optional trajectory recording, so engines close both in one place. A session tick listener (see
+// SimulationSession.setTickListener) additionally sees every tick as it closes; it is never closed here.
+final class TickOutput implements AutoCloseable {
+
+    private final Path path;
+    private final TickSink sink;
+    private final MetricsCollector metrics;
+    private final TrajectoryWriter trajectories;
+    private boolean finished;
+
+    TickOutput(SimulationConfig config, Path defaultPath) {
+        this(config, defaultPath, null, null, null);
+    }
+
+    // Vehicles must already be placed: their positions are the trajectory's starting state.
+    TickOutput(SimulationConfig config, Path defaultPath, Grid grid, VehicleState vehicles, TickSink listener) {
+        this.path = !config.writeTicksCsv() ? null : (config.outTicksCsv() != null ? config.outTicksCsv() : defaultPath);
+        if (path != null && ColumnarFormat.isColumnar(path)) {
+            this.sink = new ColumnarTicksWriter(path, config.ticks());
+        } else if (path != null && config.streamTicks()) {
+            this.sink = new StreamingTicksWriter(path);
+        } else {
+            this.sink = null;
+        }
+
+        TickSink forward = (sink == null || listener == null) ? sink : new Tee(sink, listener);
+        this.metrics = switch (collector(config, path, sink, listener)) {
+            case TOTALS_ONLY -> new MetricsCollector();
+            case LISTENER_ONLY -> new MetricsCollector(listener);
+            case BUFFERED_CSV -> new MetricsCollector(listener, config.ticks());
+            case STREAMING -> new MetricsCollector(forward);
+            case STREAMING_CHECKPOINTED -> new MetricsCollector(forward, Math.min(config.checkpointInterval(), config.ticks()));
+        };
+
+        if (config.trajectoryFile() != null && vehicles != null) {
+            int[] cells = new int[vehicles.vehicleCount()];
+            int[] dirs = new int[vehicles.vehicleCount()];
+            for (int i = 0; i < vehicles.vehicleCount(); i++) {
+                cells[vehicles.id(i)] = grid.cellOfNode(vehicles.nodeIdx(i));
+                dirs[vehicles.id(i)] = vehicles.dirIdx(i);
+            }
+            this.trajectories = new TrajectoryWriter(config.trajectoryFile(), grid.width(), grid.height(), config.ticks(), cells, dirs);
+        } else {
+            this.trajectories = null;
+        }
+    }
+
+    private static Collector collector(SimulationConfig config, Path path, TickSink sink, TickSink listener) {
+        if (sink != null) {
+            return (config.checkpointInterval() > 0) ? Collector.STREAMING_CHECKPOINTED : Collector.STREAMING;
+        }
+        if (path != null) {
+            return Collector.BUFFERED_CSV;
+        }
+        return (listener != null) ? Collector.LISTENER_ONLY : Collector.TOTALS_ONLY;
+    }
+
+    // data/ticks_<mode>_N<n>_T<ticks>[_P<threads>].csv, used when the run writes ticks without an explicit path.
+    static Path defaultPath(SimulationConfig config) {
+        String mode = switch (config.mode()) {
+            case SEQUENTIAL -> "seq";
+            case PARALLEL -> "par";
+            case SPATIAL -> "spatial";
+            case FORKJOIN -> "fj";
+            case AUTO -> "auto";
+        };
+        String p = (config.mode() == RunMode.SEQUENTIAL) ? "" : ("_P" + config.threads());
+        return Path.of("data", "ticks_" + mode + "_N" + config.vehicles() + "_T" + config.ticks() + p + ".csv");
+    }
+
+    MetricsCollector metrics() {
+        return metrics;
+    }
+
+    TrajectoryWriter.Lane trajectoryLane() {
+        return (trajectories != null) ? trajectories.newLane() : null;
+    }
+
+    void finish() {
+        finished = true;
+        if (sink != null) {
+            sink.close();
+        } else if (path != null) {
+            new CsvTicksWriter().write(path, metrics.movedPerTick(), metrics.stoppedPerTick());
+        }
+        if (trajectories != null) {
+            trajectories.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (sink != null && finished) {
+                sink.close();
+            } else if (sink != null) {
+                sink.abort();
+            }
+        } finally {
+            if (trajectories != null) {
+                trajectories.close();
+            }
+        }
+    }
+
+    // How the MetricsCollector treats the series; the listener, if any, sees every tick in all cases but TOTALS_ONLY.
+    private enum Collector {
+        // No ticks output and no listener: totals only.
+        TOTALS_ONLY,
+        // No ticks output: every tick goes to the listener and nothing is kept.
+        LISTENER_ONLY,
+        // Plain CSV: the series is kept in memory and written by finish().
+        BUFFERED_CSV,
+        // Streamed CSV or .tcol: every tick goes to the sink as it closes and nothing is kept.
+        STREAMING,
+        // Like STREAMING, but the rows since the last checkpoint (at most checkpointInterval) are also kept so the
+        // next checkpoint can persist them.
+        STREAMING_CHECKPOINTED
+    }
+
+    private record Tee(TickSink first, TickSink second) implements TickSink {
+
+        @Override
+        public void accept(int tick, int moved, int stopped) {
+            first.accept(tick, moved, stopped);
+            second.accept(tick, moved, stopped);
+        }
+
+        @Override
+        public void close() {
+            first.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.io.TickSink;
+
+import java.util.Arrays;
+
+// Session tick listener that keeps the series of the last run. Rows are stored by tick, so when mode=auto probes
+// (shorter runs from tick 0) precede the chosen run on the same session, the chosen run overwrites every tick.
+public final class TickRecorder implements TickSink {
+
+    private final int[] moved;
+    private final int[] stopped;
+
+    public TickRecorder(int ticks) {
+        this.moved = new int[ticks];
+        this.stopped = new int[ticks];
+    }
+
+    @Override
+    public void accept(int tick, int movedCount, int stoppedCount) {
+        moved[tick] = movedCount;
+        stopped[tick] = stoppedCount;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public int[] moved() {
+        return Arrays.copyOf(moved, moved.length);
+    }
+
+    public int[] stopped() {
+        return Arrays.copyOf(stopped, stopped.length);
+    }
+}
@@ -1,6 +1,5 @@
 package com.nuti.traffic.sim;
 
-import com.nuti.traffic.model.CellType;
 import com.nuti.traffic.model.Direction;
 import com.nuti.traffic.model.Grid;
 
@@ -9,32 +8,34 @@ import java.util.SplittableRandom;
 public final class VehicleInitializer {
 
     public void initialize(Grid grid, long seed, int vehicleCount, VehicleState vehicles, int[] occ) {
-        int transitable = 0;
-        for (int cellIdx = 0; cellIdx < grid.cellCount(); cellIdx++) {
-            if (grid.isTransitable(cellIdx)) {
-                transitable++;
-            }
+        initialize(grid, seed, vehicleCount, vehicles, PackedOccupancy.create(grid.nodeCount()));
+        for (int i = 0; i < vehicleCount; i++) {
+            Occupancy.set(occ, vehicles.nodeIdx(i), vehicles.dirIdx(i), i);
         }
-        long capacity = 2L * transitable;
+    }
+
+    public void initialize(Grid grid, long seed, int vehicleCount, VehicleState vehicles, long[] occ) {
+        long capacity = 2L * grid.nodeCount();
         if (vehicleCount > capacity) {
             throw new IllegalArgumentException("Cannot place N=" + vehicleCount + " vehicles: capacity=" + capacity);
         }
 
+        vehicles.resetOrder();
         int[] candidateKeys = buildCandidateKeys(grid);
         shuffle(candidateKeys, new SplittableRandom(seed));
 
         int placed = 0;
         for (int k = 0; k < candidateKeys.length && placed < vehicleCount; k++) {
             int key = candidateKeys[k];
-            int cellIdx = key / 4;
+            int nodeIdx = key / 4;
             int dirIdx = key % 4;
 
-            if (!Occupancy.canOccupy(occ, cellIdx, dirIdx)) {
+            if (!PackedOccupancy.canOccupy(occ, nodeIdx, dirIdx)) {
                 continue;
             }
 
-            Occupancy.set(occ, cellIdx, dirIdx, placed);
-            vehicles.set(placed, cellIdx, dirIdx);
+            PackedOccupancy.set(occ, nodeIdx, dirIdx);
+            vehicles.set(placed, nodeIdx, dirIdx);
             placed++;
         }
 
@@ -44,29 +45,24 @@ public final class VehicleInitializer {
     }
 
     private static int[] buildCandidateKeys(Grid grid) {
-        int max = grid.cellCount() * 4;
+        int max = grid.nodeCount() * 4;
         int[] tmp = new int[max];
         int n = 0;
 
-        for (int cellIdx = 0; cellIdx < grid.cellCount(); cellIdx++) {
-            if (!grid.isTransitable(cellIdx)) {
-                continue;
-            }
-
-            CellType type = grid.cellTypeAt(cellIdx);
-            if (type == CellType.INTERSECTION) {
+        for (int nodeIdx = 0; nodeIdx < grid.nodeCount(); nodeIdx++) {
+            if (grid.isIntersectionNode(nodeIdx)) {
                 for (Direction d : Direction.values()) {
-                    tmp[n++] = Occupancy.key(cellIdx, d.index());
+                    tmp[n++] = Occupancy.key(nodeIdx, d.index());
                 }
                 continue;
             }
 
-            if (isRoadHorizontal(grid, cellIdx)) {
-                tmp[n++] = Occupancy.key(cellIdx, Direction.EAST.index());
-                tmp[n++] = Occupancy.key(cellIdx, Direction.WEST.index());
+            if (isRoadHorizontal(grid, nodeIdx)) {
+                tmp[n++] = Occupancy.key(nodeIdx, Direction.EAST.index());
+                tmp[n++] = Occupancy.key(nodeIdx, Direction.WEST.index());
             } else {
-                tmp[n++] = Occupancy.key(cellIdx, Direction.NORTH.index());
-                tmp[n++] = Occupancy.key(cellIdx, Direction.SOUTH.index());
+                tmp[n++] = Occupancy.key(nodeIdx, Direction.NORTH.index());
+                tmp[n++] = Occupancy.key(nodeIdx, Direction.SOUTH.index());
             }
         }
 
@@ -75,11 +71,9 @@ public final class VehicleInitializer {
         return out;
     }
 
-    private static boolean isRoadHorizontal(Grid grid, int cellIdx) {
-        int x = grid.x(cellIdx);
-        int y = grid.y(cellIdx);
-        boolean left = grid.inBounds(x - 1, y) && grid.isTransitable(grid.idx(x - 1, y));
-        boolean right = grid.inBounds(x + 1, y) && grid.isTransitable(grid.idx(x + 1, y));
+    private static boolean isRoadHorizontal(Grid grid, int nodeIdx) {
+        boolean left = grid.nodeNeighbor(nodeIdx, Direction.WEST.index()) >= 0;
+        boolean right = grid.nodeNeighbor(nodeIdx, Direction.EAST.index()) >= 0;
         return left || right;
     }
 
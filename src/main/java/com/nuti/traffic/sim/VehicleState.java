@@ -2,45 +2,99 @@ package com.nuti.traffic.sim;
 
 import java.util.Arrays;
 
+// Storage slots may be permuted by reorderByNode; id(slot) is the original vehicleId used for RNG and priority.
 public final class VehicleState {
 
     private final int vehicleCount;
-    private final int[] cellIdx;
+    private final int[] nodeIdx;
     private final int[] dirIdx;
+    private final int[] ids;
+
+    private int[] scratchNode;
+    private int[] scratchDir;
+    private int[] scratchId;
+    private int[] nodeCounts;
 
     public VehicleState(int vehicleCount) {
         if (vehicleCount < 0) {
             throw new IllegalArgumentException("vehicleCount must be >= 0");
         }
         this.vehicleCount = vehicleCount;
-        this.cellIdx = new int[vehicleCount];
+        this.nodeIdx = new int[vehicleCount];
         this.dirIdx = new int[vehicleCount];
-        Arrays.fill(this.cellIdx, -1);
+        this.ids = new int[vehicleCount];
+        Arrays.fill(this.nodeIdx, -1);
         Arrays.fill(this.dirIdx, -1);
+        resetOrder();
     }
 
     public int vehicleCount() {
         return vehicleCount;
     }
 
-    public int cellIdx(int vehicleId) {
-        return cellIdx[vehicleId];
+    public int nodeIdx(int slot) {
+        return nodeIdx[slot];
+    }
+
+    public int dirIdx(int slot) {
+        return dirIdx[slot];
     }
 
-    public int dirIdx(int vehicleId) {
-        return dirIdx[vehicleId];
+    public int id(int slot) {
+        return ids[slot];
     }
 
-    public void set(int vehicleId, int cellIdx, int dirIdx) {
-        this.cellIdx[vehicleId] = cellIdx;
-        this.dirIdx[vehicleId] = dirIdx;
+    public void set(int slot, int nodeIdx, int dirIdx) {
+        this.nodeIdx[slot] = nodeIdx;
+        this.dirIdx[slot] = dirIdx;
     }
 
-    public int[] cellIdxArray() {
-        return cellIdx;
+    public int[] nodeIdxArray() {
+        return nodeIdx;
     }
 
     public int[] dirIdxArray() {
         return dirIdx;
     }
+
+    public int[] idArray() {
+        return ids;
+    }
+
+    public void resetOrder() {
+        for (int i = 0; i < vehicleCount; i++) {
+            ids[i] = i;
+        }
+    }
+
+    // Stable counting sort of the slots by node id (row-major), so vehicles that are close on the map are close in memory.
+    public void reorderByNode(int nodeCount) {
+        if (scratchNode == null) {
+            scratchNode = new int[vehicleCount];
+            scratchDir = new int[vehicleCount];
+            scratchId = new int[vehicleCount];
+        }
+        if (nodeCounts == null || nodeCounts.length != nodeCount + 1) {
+            nodeCounts = new int[nodeCount + 1];
+        } else {
+            Arrays.fill(nodeCounts, 0);
+        }
+
+        for (int i = 0; i < vehicleCount; i++) {
+            nodeCounts[nodeIdx[i] + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            nodeCounts[node + 1] += nodeCounts[node];
+        }
+        for (int i = 0; i < vehicleCount; i++) {
+            int dst = nodeCounts[nodeIdx[i]]++;
+            scratchNode[dst] = nodeIdx[i];
+            scratchDir[dst] = dirIdx[i];
+            scratchId[dst] = ids[i];
+        }
+
+        System.arraycopy(scratchNode, 0, nodeIdx, 0, vehicleCount);
+        System.arraycopy(scratchDir, 0, dirIdx, 0, vehicleCount);
+        System.arraycopy(scratchId, 0, ids, 0, vehicleCount);
+    }
 }
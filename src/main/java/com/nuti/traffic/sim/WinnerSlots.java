@@ -0,0 +1,53 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.model.Direction;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+final class WinnerSlots {
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final AtomicLongArray slots;
+
+    WinnerSlots(int nodeCount) {
+        this.slots = new AtomicLongArray(nodeCount * 4);
+    }
+
+    void propose(int key, int vehicleId, int stamp) {
+        long packed = pack(stamp, vehicleId);
+        long cur = slots.get(key);
+        while (packed > cur) {
+            long witness = slots.compareAndExchange(key, cur, packed);
+            if (witness == cur) {
+                return;
+            }
+            cur = witness;
+        }
+    }
+
+    boolean wins(int nodeIdx, int dirIdx, int vehicleId, int stamp) {
+        int base = nodeIdx * 4;
+        if (minAt(base + dirIdx, stamp) != vehicleId) {
+            return false;
+        }
+        int hMin = Math.min(minAt(base + Direction.EAST.index(), stamp), minAt(base + Direction.WEST.index(), stamp));
+        int vMin = Math.min(minAt(base + Direction.NORTH.index(), stamp), minAt(base + Direction.SOUTH.index(), stamp));
+        if (Direction.isHorizontalIndex(dirIdx)) {
+            return vMin == NONE || hMin < vMin;
+        }
+        return vMin < hMin;
+    }
+
+    private int minAt(int key, int stamp) {
+        long v = slots.get(key);
+        if ((int) (v >>> 32) != stamp) {
+            return NONE;
+        }
+        return NONE - (int) v;
+    }
+
+    private static long pack(int stamp, int vehicleId) {
+        return ((long) stamp << 32) | (NONE - vehicleId);
+    }
+}
@@ -0,0 +1,53 @@
+package com.nuti.traffic.bench;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoreSchedulerTest {
+
+    @Test
+    void packsTasksWithinBudget_andRunsOversizedTasksAlone() {
+        int[] cores = { 1, 2, 16, 1, 4, 1, 2 };
+        AtomicInteger inUse = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < cores.length; i++) {
+            int c = Math.min(cores[i], 4);
+            int value = i;
+            tasks.add(() -> {
+                peak.accumulateAndGet(inUse.addAndGet(c), Math::max);
+                Thread.sleep(20);
+                inUse.addAndGet(-c);
+                return value;
+            });
+        }
+
+        List<CoreScheduler.Outcome<Integer>> out = new CoreScheduler(4).runAll(cores, tasks);
+
+        assertTrue(peak.get() <= 4, "peak cores " + peak.get());
+        for (int i = 0; i < cores.length; i++) {
+            assertEquals(i, out.get(i).value());
+        }
+        assertEquals(0, out.get(2).sharedCores());
+        assertEquals(0, out.get(4).sharedCores());
+        assertTrue(out.get(0).sharedCores() > 0);
+    }
+
+    @Test
+    void failingTask_stopsTheRunWithItsCause() {
+        List<Callable<Integer>> tasks = List.of(() -> 1, () -> {
+            throw new IllegalStateException("boom");
+        }, () -> 3);
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> new CoreScheduler(1).runAll(new int[] { 1, 1, 1 }, tasks));
+        assertEquals("boom", e.getCause().getMessage());
+    }
+}
@@ -0,0 +1,68 @@
+package com.nuti.traffic.bench;
+
+import com.nuti.traffic.io.ColumnarReader;
+import com.nuti.traffic.sim.RunMode;
+import com.nuti.traffic.sim.SequentialEngine;
+import com.nuti.traffic.sim.SimulationConfig;
+import com.nuti.traffic.sim.SimulationResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class EnsembleRunnerTest {
+
+    @Test
+    void parseSeeds_rangesAndLists() {
+        assertArrayEquals(new long[] { 1, 2, 3, 7, 10, 11 }, EnsembleRunner.parseSeeds("1..3, 7,10..11"));
+        assertThrows(IllegalArgumentException.class, () -> EnsembleRunner.parseSeeds("5..2"));
+    }
+
+    @Test
+    void concurrentSeeds_matchStandaloneRuns(@TempDir Path tmp) {
+        Path grid = Path.of("grids", "big.txt");
+        long[] seeds = EnsembleRunner.parseSeeds("1..6");
+        Path out = tmp.resolve("ensemble.tcol");
+
+        EnsembleRunner.Summary summary = new EnsembleRunner().runEnsemble(grid, seeds, 300, 120, 0.3, 7, null, 3, out);
+        assertEquals(6, summary.seeds());
+        assertEquals(3, summary.workers());
+
+        Map<Long, Double> standalone = new HashMap<>();
+        double sum = 0.0;
+        for (long seed : seeds) {
+            SimulationResult r = new SequentialEngine().run(new SimulationConfig(grid, 300, 120, seed, 0.3, 7, RunMode.SEQUENTIAL, 1, null, false));
+            standalone.put(seed, r.avgFlow());
+            sum += r.avgFlow();
+        }
+        assertEquals(sum / seeds.length, summary.meanFlow(), 1e-9);
+
+        ColumnarReader reader = new ColumnarReader(out);
+        assertEquals(seeds.length, reader.rowCount());
+        for (long row = 0; row < reader.rowCount(); row++) {
+            long seed = reader.getLong(reader.columnIndex("seed"), row);
+            assertEquals(standalone.get(seed), reader.getDouble(reader.columnIndex("avg_flow"), row), 0.0, "seed " + seed);
+        }
+    }
+
+    @Test
+    void batchedSeeds_sameRowsAsOneRunPerSeed(@TempDir Path tmp) {
+        Path grid = Path.of("grids", "big.txt");
+        long[] seeds = EnsembleRunner.parseSeeds("1..7");
+
+        EnsembleRunner.Summary single = new EnsembleRunner().runEnsemble(grid, seeds, 300, 120, 0.3, 7, null, 2, 1, tmp.resolve("single.csv"));
+        EnsembleRunner.Summary batched = new EnsembleRunner().runEnsemble(grid, seeds, 300, 120, 0.3, 7, null, 2, 3, tmp.resolve("batched.csv"));
+        assertEquals(2, batched.workers());
+        assertEquals(single.meanFlow(), batched.meanFlow(), 0.0);
+        assertEquals(single.stdFlow(), batched.stdFlow(), 0.0);
+        assertEquals(single.meanStopped(), batched.meanStopped(), 0.0);
+        assertThrows(IllegalArgumentException.class,
+                () -> new EnsembleRunner().runEnsemble(grid, seeds, 300, 120, 0.3, 7, null, 2, 0, tmp.resolve("bad.csv")));
+    }
+}
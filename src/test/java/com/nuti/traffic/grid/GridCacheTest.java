@@ -0,0 +1,88 @@
+package com.nuti.traffic.grid;
+
+import com.nuti.traffic.model.Grid;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GridCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void compile_thenLoad_matchesTextGrid() {
+        Path source = Path.of("grids", "big.txt");
+        Grid expected = new GridLoader().load(source);
+
+        Path compiled = new GridCache(tempDir).compile(source);
+        assertTrue(BinaryGridFormat.isBinaryGrid(compiled));
+
+        Grid actual = new GridLoader().load(compiled);
+        assertEquals(expected.width(), actual.width());
+        assertEquals(expected.height(), actual.height());
+        assertEquals(expected.intersectionCount(), actual.intersectionCount());
+        for (int i = 0; i < expected.cellCount(); i++) {
+            assertEquals(expected.cellTypeAt(i), actual.cellTypeAt(i));
+            assertEquals(expected.intersectionIndexAtCell(i), actual.intersectionIndexAtCell(i));
+        }
+    }
+
+    @Test
+    void compile_sameContent_reusesCompiledFile() throws IOException {
+        Path source = tempDir.resolve("grid.txt");
+        Files.copy(Path.of("grids", "ejemplo1.txt"), source);
+        GridCache cache = new GridCache(tempDir.resolve("cache"));
+
+        Path first = cache.compile(source);
+        FileTime written = Files.getLastModifiedTime(first);
+        Files.setLastModifiedTime(first, FileTime.fromMillis(written.toMillis() - 60_000));
+        FileTime aged = Files.getLastModifiedTime(first);
+
+        Path second = cache.compile(source);
+        assertEquals(first, second);
+        assertEquals(aged, Files.getLastModifiedTime(second));
+    }
+
+    @Test
+    void compile_changedContent_producesNewEntry() throws IOException {
+        Path source = tempDir.resolve("grid.txt");
+        Files.copy(Path.of("grids", "ejemplo1.txt"), source);
+        GridCache cache = new GridCache(tempDir.resolve("cache"));
+
+        Path first = cache.compile(source);
+        Files.copy(Path.of("grids", "big.txt"), source, StandardCopyOption.REPLACE_EXISTING);
+        Path second = cache.compile(source);
+
+        assertNotEquals(first, second);
+        assertEquals(new GridLoader().load(Path.of("grids", "big.txt")).cellCount(), new GridLoader().load(second).cellCount());
+    }
+
+    @Test
+    void compile_invalidSource_throwsAndWritesNothing() throws IOException {
+        Path source = tempDir.resolve("bad.txt");
+        Files.writeString(source, "..#\n###\n###\n");
+        Path cacheDir = tempDir.resolve("cache");
+
+        assertThrows(GridValidationException.class, () -> new GridCache(cacheDir).compile(source));
+        assertTrue(!Files.exists(cacheDir) || Files.list(cacheDir).findAny().isEmpty());
+    }
+
+    @Test
+    void load_notACompiledGrid_throws() throws IOException {
+        Path p = tempDir.resolve("fake" + BinaryGridFormat.EXTENSION);
+        Files.write(p, new byte[128]);
+
+        assertThrows(GridValidationException.class, () -> new GridLoader().load(p));
+    }
+}
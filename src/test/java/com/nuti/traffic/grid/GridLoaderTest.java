@@ -1,5 +1,7 @@
 package com.nuti.traffic.grid;
 
+import com.nuti.traffic.model.CellType;
+import com.nuti.traffic.model.Direction;
 import com.nuti.traffic.model.Grid;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -9,6 +11,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class GridLoaderTest {
@@ -90,4 +93,24 @@ public class GridLoaderTest {
             g.intersectionCount();
         });
     }
+
+    @Test
+    void load_bigGrid_neighborTableMatchesCoordinates() {
+        Grid g = new GridLoader().load(Path.of("grids", "big.txt"));
+        for (int idx = 0; idx < g.cellCount(); idx++) {
+            if (!g.isTransitable(idx)) {
+                assertEquals(-1, g.nodeOfCell(idx));
+                continue;
+            }
+            int node = g.nodeOfCell(idx);
+            assertEquals(idx, g.cellOfNode(node));
+            assertEquals(g.cellTypeAt(idx) == CellType.INTERSECTION, g.isIntersectionNode(node));
+            for (Direction d : Direction.values()) {
+                int x = g.x(idx) + d.dx();
+                int y = g.y(idx) + d.dy();
+                int expected = (g.inBounds(x, y) && g.isTransitable(g.idx(x, y))) ? g.nodeOfCell(g.idx(x, y)) : -1;
+                assertEquals(expected, g.nodeNeighbor(node, d.index()));
+            }
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package com.nuti.traffic.grid;
+
+import com.nuti.traffic.model.Direction;
+import com.nuti.traffic.model.Grid;
+import com.nuti.traffic.model.LightProgram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LightProgramLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void load_assignsPlansOffsetsAndWave() throws IOException {
+        Grid grid = new GridLoader().load(Path.of("grids", "big.txt"));
+        Path plans = tempDir.resolve("plans.txt");
+        Files.writeString(plans, String.join("\n",
+                "# comentario",
+                "plan base 4:H 1:R 4:V 1:R",
+                "plan corto 2:H 2:V  # fin de linea",
+                "default base 1",
+                "wave 1 0",
+                "light 2 2 corto 3",
+                ""));
+
+        LightProgram program = new LightProgramLoader().load(plans, grid);
+
+        int corner = grid.intersectionIndexAtCell(grid.idx(2, 2));
+        int next = grid.intersectionIndexAtCell(grid.idx(10, 2));
+        assertEquals(grid.intersectionCount(), program.intersectionCount());
+
+        // corto with offset 3 + wave 2
+        assertTrue(program.allows(corner, 5, Direction.EAST.index()));
+        assertTrue(program.allows(corner, 7, Direction.NORTH.index()));
+
+        // base with offset 1 + wave 10: green H for ticks 11..14, all red at 15
+        assertTrue(program.allows(next, 11, Direction.EAST.index()));
+        assertFalse(program.allows(next, 15, Direction.EAST.index()));
+        assertFalse(program.allows(next, 15, Direction.NORTH.index()));
+        assertTrue(program.allows(next, 16, Direction.NORTH.index()));
+    }
+
+    @Test
+    void load_rejectsInvalidFiles() throws IOException {
+        Grid grid = new GridLoader().load(Path.of("grids", "big.txt"));
+        String[] bad = {
+                "plan a 3:X\ndefault a",
+                "plan a 3:H\nlight 3 3 a",
+                "plan a 3:H\ndefault b",
+                "plan a 3:H",
+                "plan a 0:H\ndefault a",
+                "semaforo 1 2"
+        };
+        for (int i = 0; i < bad.length; i++) {
+            Path p = tempDir.resolve("bad" + i + ".txt");
+            Files.writeString(p, bad[i]);
+            assertThrows(GridValidationException.class, () -> new LightProgramLoader().load(p, grid), bad[i]);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.nuti.traffic.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ColumnarFormatTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void writeThenRead_allColumnTypes() {
+        Path file = tmp.resolve("t.tcol");
+        List<ColumnarFormat.Column> schema = List.of(
+                new ColumnarFormat.Column("mode", ColumnarFormat.Type.STRING),
+                new ColumnarFormat.Column("N", ColumnarFormat.Type.INT32),
+                new ColumnarFormat.Column("seed", ColumnarFormat.Type.INT64),
+                new ColumnarFormat.Column("avg_flow", ColumnarFormat.Type.FLOAT64)
+        );
+        try (ColumnarWriter w = new ColumnarWriter(file, 3, schema)) {
+            String[] modes = { "SEQUENTIAL", "PARALLEL", "SEQUENTIAL" };
+            for (int r = 0; r < 3; r++) {
+                w.putString(0, r, modes[r]);
+                w.putInt(1, r, 100 * r);
+                w.putLong(2, r, Long.MAX_VALUE - r);
+                w.putDouble(3, r, r + 0.25);
+            }
+            assertThrows(IllegalArgumentException.class, () -> w.putDouble(1, 0, 1.0));
+            w.finish();
+        }
+
+        ColumnarReader r = new ColumnarReader(file);
+        assertEquals(3, r.rowCount());
+        assertEquals(schema, r.columns());
+        assertEquals("PARALLEL", r.getString(0, 1));
+        assertEquals("SEQUENTIAL", r.getString(0, 2));
+        assertEquals(200, r.getInt(r.columnIndex("N"), 2));
+        assertEquals(Long.MAX_VALUE - 1, r.getLong(2, 1));
+        assertEquals(2.25, r.doubles(3).get(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> r.getInt(1, 3));
+    }
+
+    @Test
+    void ticks_truncatedOnEarlyClose_andExportMatchesCsvWriter() throws IOException {
+        Path file = tmp.resolve("ticks.tcol");
+        try (ColumnarTicksWriter w = new ColumnarTicksWriter(file, 10)) {
+            for (int t = 0; t < 6; t++) {
+                w.accept(t, t * 2, 10 - t * 2);
+            }
+        }
+
+        ColumnarReader r = new ColumnarReader(file);
+        assertEquals(6, r.rowCount());
+        IntBuffer moved = r.ints(r.columnIndex("moved"));
+        assertEquals(6, moved.remaining());
+        assertEquals(10, moved.get(5));
+
+        int[] m = new int[6];
+        int[] s = new int[6];
+        for (int t = 0; t < 6; t++) {
+            m[t] = t * 2;
+            s[t] = 10 - t * 2;
+        }
+        Path csv = tmp.resolve("ticks.csv");
+        Path exported = tmp.resolve("exported.csv");
+        new CsvTicksWriter().write(csv, m, s);
+        ColumnarCsvExport.export(r, exported);
+        assertArrayEquals(Files.readAllBytes(csv), Files.readAllBytes(exported));
+    }
+
+    @Test
+    void failedRun_leavesNoColumnarFile() throws IOException {
+        Path file = tmp.resolve("failed.tcol");
+        ColumnarTicksWriter sink = new ColumnarTicksWriter(file, 100);
+        sink.accept(0, 3, 4);
+        sink.accept(1, 5, 2);
+        sink.abort();
+
+        try (ColumnarWriter w = new ColumnarWriter(tmp.resolve("unfinished.tcol"), 4, ColumnarTicksWriter.SCHEMA)) {
+            w.putInt(0, 0, 1);
+        }
+        try (Stream<Path> files = Files.list(tmp)) {
+            assertEquals(List.of(), files.toList());
+        }
+    }
+
+    @Test
+    void read_rejectsNonColumnarFile() throws IOException {
+        Path file = tmp.resolve("bad.tcol");
+        Files.writeString(file, "tick,moved,stopped\n0,1,2\n");
+        assertThrows(IllegalArgumentException.class, () -> new ColumnarReader(file));
+    }
+}
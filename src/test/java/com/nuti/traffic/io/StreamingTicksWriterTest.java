@@ -0,0 +1,67 @@
+package com.nuti.traffic.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class StreamingTicksWriterTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void streamedRows_matchCsvTicksWriter_plainAndGzip() throws IOException {
+        int ticks = 5000;
+        int[] moved = new int[ticks];
+        int[] stopped = new int[ticks];
+        for (int t = 0; t < ticks; t++) {
+            moved[t] = (t * 7919) % 1000;
+            stopped[t] = 1000 - moved[t];
+        }
+
+        Path expected = tmp.resolve("expected.csv");
+        new CsvTicksWriter().write(expected, moved, stopped);
+
+        Path plain = tmp.resolve("streamed.csv");
+        Path gz = tmp.resolve("streamed.csv.gz");
+        // A tiny ring forces the producer to block on the writer thread.
+        try (StreamingTicksWriter a = new StreamingTicksWriter(plain, 4); StreamingTicksWriter b = new StreamingTicksWriter(gz, 4)) {
+            for (int t = 0; t < ticks; t++) {
+                a.accept(t, moved[t], stopped[t]);
+                b.accept(t, moved[t], stopped[t]);
+            }
+        }
+
+        byte[] want = Files.readAllBytes(expected);
+        assertArrayEquals(want, Files.readAllBytes(plain));
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gz))) {
+            assertArrayEquals(want, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void slowProducer_wakesIdleWriter() throws IOException, InterruptedException {
+        int[] moved = {3, 1, 4, 1};
+        int[] stopped = {5, 9, 2, 6};
+        Path expected = tmp.resolve("expected.csv");
+        new CsvTicksWriter().write(expected, moved, stopped);
+
+        Path streamed = tmp.resolve("streamed.csv");
+        try (StreamingTicksWriter w = new StreamingTicksWriter(streamed, 4)) {
+            for (int t = 0; t < moved.length; t++) {
+                // Long enough for the writer to drain the ring and park before the next row.
+                Thread.sleep(20);
+                w.accept(t, moved[t], stopped[t]);
+            }
+        }
+
+        assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(streamed));
+    }
+}
@@ -0,0 +1,48 @@
+package com.nuti.traffic.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LightProgramTest {
+
+    @Test
+    void uniform_alternatesEveryPeriod() {
+        for (int period : new int[] { 1, 3, 10 }) {
+            LightProgram program = LightProgram.uniform(2, period);
+            for (int tick = 0; tick < 5 * period + 3; tick++) {
+                int expected = (tick / period) % 2 == 0 ? LightProgram.ALLOW_H : LightProgram.ALLOW_V;
+                assertEquals(expected, program.mask(1, tick), "period=" + period + " tick=" + tick);
+            }
+        }
+    }
+
+    @Test
+    void offset_shiftsPlan() {
+        byte[] plan = { LightProgram.ALLOW_H, LightProgram.ALLOW_H, LightProgram.ALLOW_V, LightProgram.ALLOW_NONE };
+        LightProgram program = new LightProgram(new byte[][] { plan }, new int[] { 0, 0 }, new int[] { 0, 1 });
+
+        assertTrue(program.allows(0, 0, Direction.EAST.index()));
+        assertTrue(program.allows(0, 2, Direction.NORTH.index()));
+        assertFalse(program.allows(0, 3, Direction.EAST.index()));
+        assertFalse(program.allows(0, 3, Direction.NORTH.index()));
+
+        for (int tick = 0; tick < 12; tick++) {
+            assertEquals(program.mask(0, tick), program.mask(1, tick + 1));
+        }
+    }
+
+    @Test
+    void nextAllowTick_findsNextGreenForAxis() {
+        byte[] plan = { LightProgram.ALLOW_H, LightProgram.ALLOW_NONE, LightProgram.ALLOW_V, LightProgram.ALLOW_V };
+        byte[] horizontalOnly = { LightProgram.ALLOW_H };
+        LightProgram program = new LightProgram(new byte[][] { plan, horizontalOnly }, new int[] { 0, 1 }, new int[] { 0, 0 });
+
+        assertEquals(2, program.nextAllowTick(0, 0, Direction.SOUTH.index()));
+        assertEquals(4, program.nextAllowTick(0, 1, Direction.WEST.index()));
+        assertEquals(-1, program.nextAllowTick(1, 7, Direction.NORTH.index()));
+        assertEquals(4, program.maxCycle());
+    }
+}
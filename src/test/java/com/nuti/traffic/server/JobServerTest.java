@@ -0,0 +1,112 @@
+package com.nuti.traffic.server;
+
+import com.nuti.traffic.sim.RunMode;
+import com.nuti.traffic.sim.SequentialEngine;
+import com.nuti.traffic.sim.SimulationConfig;
+import com.nuti.traffic.sim.SimulationResult;
+import com.nuti.traffic.sim.SimulationSession;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JobServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void submittedJobs_streamTicksAndMatchDirectRuns() throws Exception {
+        SimulationResult direct = new SequentialEngine().run(new SimulationConfig(Path.of("grids", "big.txt"), 300, 150, 5L, 0.3, 7, RunMode.SEQUENTIAL, 1, null, false));
+
+        try (JobServer server = new JobServer(new InetSocketAddress("127.0.0.1", 0), 2, 8, 16, null)) {
+            server.start();
+            String base = "http://127.0.0.1:" + server.port() + "/jobs";
+
+            String[] ids = new String[3];
+            String[] modes = { "seq", "par", "fj" };
+            for (int j = 0; j < ids.length; j++) {
+                HttpResponse<String> submitted = post(base, "{\"grid\": \"grids/big.txt\", \"vehicles\": 300, \"ticks\": 150, \"seed\": 5, "
+                        + "\"turnProb\": 0.3, \"period\": 7, \"mode\": \"" + modes[j] + "\", \"threads\": 2}");
+                assertEquals(202, submitted.statusCode(), submitted.body());
+                ids[j] = Json.parseObject(submitted.body()).get("id").toString();
+            }
+
+            for (String id : ids) {
+                List<String> rows = get(base + "/" + id + "/ticks").body().lines().toList();
+                assertEquals(150, rows.size());
+                long moved = 0;
+                for (int t = 0; t < rows.size(); t++) {
+                    Map<String, Object> row = Json.parseObject(rows.get(t));
+                    assertEquals((long) t, row.get("tick"));
+                    moved += (Long) row.get("moved");
+                }
+                assertEquals(direct.avgFlow(), moved / 150.0, 1e-9);
+
+                HttpResponse<String> status = get(base + "/" + id);
+                assertTrue(status.body().contains("\"status\":\"DONE\""), status.body());
+                assertTrue(status.body().contains("\"avgFlow\":" + direct.avgFlow()), status.body());
+                assertTrue(status.body().contains("\"avgStopped\":" + direct.avgStopped()), status.body());
+            }
+
+            HttpResponse<String> tail = get(base + "/" + ids[0] + "/ticks?from=140");
+            assertEquals(10, tail.body().lines().count());
+        }
+    }
+
+    @Test
+    void invalidRequests_getClientErrors() throws Exception {
+        try (JobServer server = new JobServer(new InetSocketAddress("127.0.0.1", 0), 1, 1, 4, null)) {
+            server.start();
+            String base = "http://127.0.0.1:" + server.port() + "/jobs";
+
+            assertEquals(400, post(base, "{\"grid\": \"grids/big.txt\", \"vehicles\": 10, \"ticks\": 5}").statusCode());
+            assertEquals(400, post(base, "{\"grid\": \"grids/big.txt\", \"vehicles\": 10, \"ticks\": 5, \"seed\": 1, \"colour\": 1}").statusCode());
+            assertEquals(400, post(base, "{\"grid\": \"grids/missing.txt\", \"vehicles\": 10, \"ticks\": 5, \"seed\": 1}").statusCode());
+            assertEquals(400, post(base, "not json").statusCode());
+            assertEquals(400, post(base, "{\"grid\": \"grids/big.txt\", \"vehicles\": 10, \"ticks\": 5, \"seed\": 1, \"mode\": \"par\", \"sleep\": true}").statusCode());
+            assertEquals(400, post(base, "{\"grid\": \"grids/big.txt\", \"vehicles\": 10, \"ticks\": 5, \"seed\": 1, \"mode\": \"spatial\", \"reorderEvery\": 5}").statusCode());
+            assertEquals(404, get(base + "/999").statusCode());
+            assertEquals(404, get(base + "/abc/ticks").statusCode());
+        }
+    }
+
+    @Test
+    void sharedSession_reloadsEditedLightsFile(@TempDir Path tmp) throws IOException {
+        Path grid = Path.of("grids", "big.txt");
+        Path lights = tmp.resolve("lights.txt");
+        SimulationConfig cfg = new SimulationConfig(grid, 300, 100, 7L, 0.3, 7, RunMode.SEQUENTIAL, 1, null, false).withLightsFile(lights);
+
+        try (SimulationSession session = new SimulationSession(grid)) {
+            Files.writeString(lights, "plan base 2:H 2:V\ndefault base 0\n");
+            SimulationResult before = new SequentialEngine().run(cfg, session);
+            Files.writeString(lights, "plan base 9:H 1:R 9:V 1:R\ndefault base 0\n");
+            SimulationResult after = new SequentialEngine().run(cfg, session);
+
+            SimulationResult fresh = new SequentialEngine().run(cfg);
+            assertEquals(fresh.avgFlow(), after.avgFlow(), 0.0);
+            assertEquals(fresh.avgStopped(), after.avgStopped(), 0.0);
+            assertTrue(before.avgFlow() != after.avgFlow());
+        }
+    }
+
+    private HttpResponse<String> post(String uri, String body) throws IOException, InterruptedException {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(uri)).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return client.send(req, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String uri) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(uri)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
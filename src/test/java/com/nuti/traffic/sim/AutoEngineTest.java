@@ -0,0 +1,53 @@
+package com.nuti.traffic.sim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AutoEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void auto_probesOnce_thenReusesCachedDecision_withSequentialMetrics() {
+        Path grid = Path.of("grids", "big.txt");
+        Path cacheFile = tempDir.resolve("auto.properties");
+        SimulationConfig seqCfg = new SimulationConfig(grid, 300, 60, 7L, 0.2, 10, RunMode.SEQUENTIAL, 1, null, false);
+        SimulationConfig autoCfg = new SimulationConfig(grid, 300, 60, 7L, 0.2, 10, RunMode.AUTO, 1, null, false);
+
+        SimulationResult reference = new SequentialEngine().run(seqCfg);
+
+        SimulationResult first = new AutoEngine(cacheFile, 4).run(autoCfg);
+        assertNotNull(first.decision());
+        assertEquals(AutoEngine.SOURCE_PROBE, first.decision().source());
+        assertEquals(first.decision().mode(), first.mode());
+        assertEquals(reference.avgFlow(), first.avgFlow(), 0.0);
+        assertEquals(reference.avgStopped(), first.avgStopped(), 0.0);
+        assertTrue(Files.isRegularFile(cacheFile));
+
+        SimulationResult second = new AutoEngine(cacheFile, 4).run(autoCfg);
+        assertEquals(AutoEngine.SOURCE_CACHE, second.decision().source());
+        assertEquals(first.decision().mode(), second.decision().mode());
+        assertEquals(first.decision().threads(), second.decision().threads());
+        assertEquals(reference.avgFlow(), second.avgFlow(), 0.0);
+    }
+
+    @Test
+    void auto_singleCore_runsSequentialWithoutProbe() {
+        Path cacheFile = tempDir.resolve("auto.properties");
+        SimulationConfig autoCfg = new SimulationConfig(Path.of("grids", "ejemplo1.txt"), 50, 20, 3L, 0.2, 10, RunMode.AUTO, 1, null, false);
+
+        SimulationResult res = new AutoEngine(cacheFile, 1).run(autoCfg);
+
+        assertEquals(RunMode.SEQUENTIAL, res.mode());
+        assertEquals(AutoEngine.SOURCE_SINGLE_CORE, res.decision().source());
+        assertTrue(!Files.exists(cacheFile));
+    }
+}
@@ -0,0 +1,74 @@
+package com.nuti.traffic.sim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CheckpointTest {
+
+    @Test
+    void resumeFromCheckpoint_sameTicksAndTotalsAsUninterruptedRun(@TempDir Path tmp) throws IOException {
+        Path grid = Path.of("grids", "big.txt");
+        Path reference = tmp.resolve("reference.csv");
+        SimulationResult full = new SequentialEngine().run(new SimulationConfig(grid, 600, 200, 5L, 0.3, 7, RunMode.SEQUENTIAL, 1, reference, true).withReorderInterval(9));
+
+        // The last checkpoint (tick 183, odd) stays on disk, as if the run had died after it.
+        Path checkpoint = tmp.resolve("run.ckpt");
+        new ParallelEngine().run(new SimulationConfig(grid, 600, 200, 5L, 0.3, 7, RunMode.PARALLEL, 3, tmp.resolve("first.csv"), true).withReorderInterval(9).withCheckpoint(checkpoint, 61));
+
+        RunMode[] modes = { RunMode.SEQUENTIAL, RunMode.PARALLEL, RunMode.SPATIAL, RunMode.FORKJOIN };
+        SimulationEngine[] engines = { new SequentialEngine(), new ParallelEngine(), new SpatialEngine(), new ForkJoinEngine() };
+        for (int e = 0; e < engines.length; e++) {
+            Path out = tmp.resolve(modes[e] + ".csv");
+            SimulationResult resumed = engines[e].run(new SimulationConfig(grid, 600, 200, 5L, 0.3, 7, modes[e], 3, out, true).withReorderInterval(9).withCheckpoint(checkpoint, 0).withResume(true));
+            assertArrayEquals(Files.readAllBytes(reference), Files.readAllBytes(out), modes[e].toString());
+            assertEquals(full.avgFlow(), resumed.avgFlow(), 0.0);
+
+            SimulationResult totalsOnly = engines[e].run(new SimulationConfig(grid, 600, 200, 5L, 0.3, 7, modes[e], 3, null, false).withReorderInterval(9).withCheckpoint(checkpoint, 0).withResume(true));
+            assertEquals(full.avgStopped(), totalsOnly.avgStopped(), 0.0);
+        }
+    }
+
+    @Test
+    void streamedResume_chainsCheckpointRowsAcrossIntervals(@TempDir Path tmp) throws IOException {
+        Path grid = Path.of("grids", "big.txt");
+        Path reference = tmp.resolve("reference.csv");
+        new SequentialEngine().run(new SimulationConfig(grid, 600, 300, 5L, 0.3, 7, RunMode.SEQUENTIAL, 1, reference, true));
+
+        // Saves at 61..244, then a resumed run with another interval saves at 280 with only the 36 rows since 244.
+        Path checkpoint = tmp.resolve("run.ckpt");
+        new SequentialEngine().run(new SimulationConfig(grid, 600, 300, 5L, 0.3, 7, RunMode.SEQUENTIAL, 1, tmp.resolve("first.csv"), true).withStreamTicks(true).withCheckpoint(checkpoint, 61));
+        new ParallelEngine().run(new SimulationConfig(grid, 600, 300, 5L, 0.3, 7, RunMode.PARALLEL, 3, tmp.resolve("second.csv"), true).withStreamTicks(true).withCheckpoint(checkpoint, 40).withResume(true));
+        assertEquals(280L * 8, Files.size(Checkpoint.seriesPath(checkpoint)));
+
+        Path out = tmp.resolve("third.csv");
+        new ForkJoinEngine().run(new SimulationConfig(grid, 600, 300, 5L, 0.3, 7, RunMode.FORKJOIN, 3, out, true).withStreamTicks(true).withCheckpoint(checkpoint, 0).withResume(true));
+        assertArrayEquals(Files.readAllBytes(reference), Files.readAllBytes(out));
+    }
+
+    @Test
+    void resume_rejectsCheckpointOfSameSizeGridOrEditedLightsFile(@TempDir Path tmp) throws IOException {
+        Path grid = tmp.resolve("loop.txt");
+        Path shifted = tmp.resolve("shifted.txt");
+        Files.writeString(grid, String.join("\n", "#######", "#######", "##+.+##", "##.#.##", "##+.+##", "#######", "#######", ""));
+        Files.writeString(shifted, String.join("\n", "#######", "#######", "###+.+#", "###.#.#", "###+.+#", "#######", "#######", ""));
+        Path lights = tmp.resolve("lights.txt");
+        Files.writeString(lights, "plan base 2:H 2:V\ndefault base 0\n");
+        Path checkpoint = tmp.resolve("run.ckpt");
+        new SequentialEngine().run(new SimulationConfig(grid, 4, 20, 3L, 0.3, 7, RunMode.SEQUENTIAL, 1, null, false).withLightsFile(lights).withCheckpoint(checkpoint, 10));
+
+        SimulationConfig sameGrid = new SimulationConfig(grid, 4, 20, 3L, 0.3, 7, RunMode.SEQUENTIAL, 1, null, false).withLightsFile(lights).withCheckpoint(checkpoint, 0).withResume(true);
+        new SequentialEngine().run(sameGrid);
+        assertThrows(IllegalArgumentException.class, () -> new SequentialEngine().run(new SimulationConfig(shifted, 4, 20, 3L, 0.3, 7, RunMode.SEQUENTIAL, 1, null, false).withLightsFile(lights).withCheckpoint(checkpoint, 0).withResume(true)));
+
+        Files.writeString(lights, "plan base 3:H 3:V\ndefault base 0\n");
+        assertThrows(IllegalArgumentException.class, () -> new SequentialEngine().run(sameGrid));
+    }
+}
@@ -3,8 +3,7 @@ package com.nuti.traffic.sim;
 import com.nuti.traffic.model.CellType;
 import com.nuti.traffic.model.Direction;
 import com.nuti.traffic.model.Grid;
-import com.nuti.traffic.model.TrafficLight;
-import com.nuti.traffic.model.TrafficLightState;
+import com.nuti.traffic.model.LightProgram;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
@@ -20,15 +19,15 @@ public class MoveRulesTest {
         Grid grid = simple3x3Intersection();
 
         // Make the center intersection vertical green (horizontal red)
-        TrafficLight[] lights = new TrafficLight[]{new TrafficLight(10, TrafficLightState.V_GREEN)};
+        LightProgram lights = new LightProgram(new byte[][]{{LightProgram.ALLOW_V}}, new int[]{0}, new int[]{0});
 
         VehicleState vs = new VehicleState(1);
         // vehicle at (0,1) heading EAST -> target is (1,1) which is '+'
-        int start = grid.idx(0, 1);
+        int start = grid.nodeOfCell(grid.idx(0, 1));
         vs.set(0, start, Direction.EAST.index());
 
-        int[] occ = new Occupancy(grid.cellCount()).array();
-        Occupancy.set(occ, start, Direction.EAST.index(), 0);
+        long[] occ = PackedOccupancy.create(grid.nodeCount());
+        PackedOccupancy.set(occ, start, Direction.EAST.index());
 
         SimulationConfig cfg = new SimulationConfig(
                 null,
@@ -54,14 +53,14 @@ public class MoveRulesTest {
     @Test
     void proposal_allowsEnteringIntersection_whenGreenForAxis() {
         Grid grid = simple3x3Intersection();
-        TrafficLight[] lights = new TrafficLight[]{new TrafficLight(10, TrafficLightState.H_GREEN)};
+        LightProgram lights = LightProgram.uniform(1, 10);
 
         VehicleState vs = new VehicleState(1);
-        int start = grid.idx(0, 1);
+        int start = grid.nodeOfCell(grid.idx(0, 1));
         vs.set(0, start, Direction.EAST.index());
 
-        int[] occ = new Occupancy(grid.cellCount()).array();
-        Occupancy.set(occ, start, Direction.EAST.index(), 0);
+        long[] occ = PackedOccupancy.create(grid.nodeCount());
+        PackedOccupancy.set(occ, start, Direction.EAST.index());
 
         SimulationConfig cfg = new SimulationConfig(
                 null,
@@ -82,28 +81,28 @@ public class MoveRulesTest {
         MoveRules.computeProposalForVehicle(grid, lights, vs, occ, cfg, 1, 0, propCell, propDir, canMove);
 
         assertTrue(canMove[0]);
-        assertEquals(grid.idx(1, 1), propCell[0]);
+        assertEquals(grid.nodeOfCell(grid.idx(1, 1)), propCell[0]);
         assertEquals(Direction.EAST.index(), propDir[0]);
     }
 
     @Test
     void proposal_blockedByOccupancy_inTargetSlot() {
         Grid grid = simple3x3Intersection();
-        TrafficLight[] lights = new TrafficLight[]{new TrafficLight(10, TrafficLightState.H_GREEN)};
+        LightProgram lights = LightProgram.uniform(1, 10);
 
         VehicleState vs = new VehicleState(2);
-        int start0 = grid.idx(0, 1);
-        int start1 = grid.idx(2, 1);
+        int start0 = grid.nodeOfCell(grid.idx(0, 1));
+        int start1 = grid.nodeOfCell(grid.idx(2, 1));
 
         // vehicle 0 wants to go EAST into center
         vs.set(0, start0, Direction.EAST.index());
         // vehicle 1 already occupies center with EAST direction
-        vs.set(1, grid.idx(1, 1), Direction.EAST.index());
+        vs.set(1, grid.nodeOfCell(grid.idx(1, 1)), Direction.EAST.index());
 
-        int[] occ = new Occupancy(grid.cellCount()).array();
-        Occupancy.set(occ, start0, Direction.EAST.index(), 0);
-        Occupancy.set(occ, start1, Direction.WEST.index(), 1); // irrelevant placement
-        Occupancy.set(occ, grid.idx(1, 1), Direction.EAST.index(), 1);
+        long[] occ = PackedOccupancy.create(grid.nodeCount());
+        PackedOccupancy.set(occ, start0, Direction.EAST.index());
+        PackedOccupancy.set(occ, start1, Direction.WEST.index()); // irrelevant placement
+        PackedOccupancy.set(occ, grid.nodeOfCell(grid.idx(1, 1)), Direction.EAST.index());
 
         SimulationConfig cfg = new SimulationConfig(
                 null,
@@ -130,19 +129,19 @@ public class MoveRulesTest {
     @Test
     void proposal_blockedByAxisMix_inTargetCell() {
         Grid grid = simple3x3Intersection();
-        TrafficLight[] lights = new TrafficLight[]{new TrafficLight(10, TrafficLightState.H_GREEN)};
+        LightProgram lights = LightProgram.uniform(1, 10);
 
         VehicleState vs = new VehicleState(2);
-        int start0 = grid.idx(0, 1);
+        int start0 = grid.nodeOfCell(grid.idx(0, 1));
 
         // vehicle 0 wants to go EAST into center (horizontal)
         vs.set(0, start0, Direction.EAST.index());
         // vehicle 1 occupies center with NORTH direction (vertical)
-        vs.set(1, grid.idx(1, 1), Direction.NORTH.index());
+        vs.set(1, grid.nodeOfCell(grid.idx(1, 1)), Direction.NORTH.index());
 
-        int[] occ = new Occupancy(grid.cellCount()).array();
-        Occupancy.set(occ, start0, Direction.EAST.index(), 0);
-        Occupancy.set(occ, grid.idx(1, 1), Direction.NORTH.index(), 1);
+        long[] occ = PackedOccupancy.create(grid.nodeCount());
+        PackedOccupancy.set(occ, start0, Direction.EAST.index());
+        PackedOccupancy.set(occ, grid.nodeOfCell(grid.idx(1, 1)), Direction.NORTH.index());
 
         SimulationConfig cfg = new SimulationConfig(
                 null,
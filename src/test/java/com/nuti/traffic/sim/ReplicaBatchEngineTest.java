@@ -0,0 +1,37 @@
+package com.nuti.traffic.sim;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ReplicaBatchEngineTest {
+
+    @Test
+    void replicaBatch_eachReplicaMatchesItsStandaloneRun() {
+        Path grid = Path.of("grids", "big.txt");
+        int n = 600;
+        int ticks = 200;
+        long[] seeds = { 5L, 6L, 11L };
+
+        try (SimulationSession session = new SimulationSession(grid)) {
+            SimulationConfig cfg = new SimulationConfig(grid, n, ticks, 0L, 0.3, 3, RunMode.SEQUENTIAL, 1, null, false);
+            SimulationResult[] batch = new ReplicaBatchEngine().run(cfg, seeds, session);
+            VehicleState replicas = session.vehicles(n * seeds.length);
+            int[] nodes = replicas.nodeIdxArray().clone();
+            int[] dirs = replicas.dirIdxArray().clone();
+
+            for (int r = 0; r < seeds.length; r++) {
+                SimulationResult single = new SequentialEngine().run(new SimulationConfig(grid, n, ticks, seeds[r], 0.3, 3, RunMode.SEQUENTIAL, 1, null, false), session);
+                assertEquals(single.avgFlow(), batch[r].avgFlow(), 0.0, "seed " + seeds[r]);
+                assertEquals(single.avgStopped(), batch[r].avgStopped(), 0.0, "seed " + seeds[r]);
+                VehicleState vehicles = session.vehicles(n);
+                for (int i = 0; i < n; i++) {
+                    assertEquals(vehicles.nodeIdx(i), nodes[i * seeds.length + r], "seed " + seeds[r] + " vehicle " + i);
+                    assertEquals(vehicles.dirIdx(i), dirs[i * seeds.length + r], "seed " + seeds[r] + " vehicle " + i);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.nuti.traffic.sim;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResultCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void hit_sameTicksAndAveragesAsTheRunThatFilledIt_forAnyEngine() throws IOException {
+        Path grid = Path.of("grids", "big.txt");
+        ResultCache cache = new ResultCache(tempDir.resolve("cache"), 1L << 20);
+        Path missCsv = tempDir.resolve("miss.csv");
+        Path hitCsv = tempDir.resolve("hit.csv");
+
+        SimulationResult miss = cache.run(new SequentialEngine(), new SimulationConfig(grid, 400, 120, 9L, 0.3, 7, RunMode.SEQUENTIAL, 1, missCsv, true));
+        SimulationConfig parCfg = new SimulationConfig(grid, 400, 120, 9L, 0.3, 7, RunMode.PARALLEL, 3, hitCsv, true).withStreamTicks(true);
+        assertEquals(cache.key(parCfg), cache.key(new SimulationConfig(grid, 400, 120, 9L, 0.3, 7, RunMode.SEQUENTIAL, 1, null, false)));
+
+        SimulationResult hit = cache.run(new ParallelEngine(), parCfg);
+        assertEquals(0L, hit.timeMs());
+        assertEquals(miss.avgFlow(), hit.avgFlow(), 0.0);
+        assertEquals(miss.avgStopped(), hit.avgStopped(), 0.0);
+        assertArrayEquals(Files.readAllBytes(missCsv), Files.readAllBytes(hitCsv));
+
+        assertNotEquals(cache.key(parCfg), cache.key(new SimulationConfig(grid, 400, 120, 10L, 0.3, 7, RunMode.PARALLEL, 3, null, false)));
+        assertNotEquals(cache.key(parCfg), cache.key(new SimulationConfig(grid, 400, 120, 9L, 0.3, 8, RunMode.PARALLEL, 3, null, false)));
+    }
+
+    @Test
+    void autoHit_writesTheDefaultTicksPathOfTheChosenEngine() throws IOException {
+        Path grid = Path.of("grids", "big.txt");
+        ResultCache cache = new ResultCache(tempDir.resolve("cache"), 1L << 20);
+        SimulationConfig autoCfg = new SimulationConfig(grid, 401, 117, 9L, 0.3, 7, RunMode.AUTO, 4, null, true);
+        // One CPU: AUTO picks SEQUENTIAL without probing, so a real run writes the seq default path.
+        AutoEngine auto = new AutoEngine(tempDir.resolve("auto.properties"), 1);
+        Path chosen = TickOutput.defaultPath(autoCfg.withMode(RunMode.SEQUENTIAL, 1));
+        Path unresolved = TickOutput.defaultPath(autoCfg);
+        try {
+            SimulationResult miss = cache.run(auto, autoCfg);
+            byte[] written = Files.readAllBytes(chosen);
+            Files.delete(chosen);
+
+            SimulationResult hit = cache.run(auto, autoCfg);
+            assertEquals(0L, hit.timeMs());
+            assertEquals(miss.mode(), hit.mode());
+            assertEquals(miss.threads(), hit.threads());
+            assertEquals(miss.decision(), hit.decision());
+            assertArrayEquals(written, Files.readAllBytes(chosen));
+            assertTrue(Files.notExists(unresolved));
+        } finally {
+            Files.deleteIfExists(chosen);
+            Files.deleteIfExists(unresolved);
+        }
+    }
+
+    @Test
+    void corruptEntriesAreMisses_andLeastRecentlyUsedAreEvictedPastTheBound() throws IOException {
+        Path dir = tempDir.resolve("cache");
+        int[] series = new int[100];
+        ResultCache.Entry entry = new ResultCache.Entry(1.5, 2.5, series, series);
+        long entrySize;
+        {
+            ResultCache probe = new ResultCache(tempDir.resolve("probe"), 1L << 20);
+            probe.put("k", entry);
+            entrySize = Files.size(tempDir.resolve("probe").resolve("k.res"));
+        }
+        ResultCache cache = new ResultCache(dir, 3 * entrySize);
+
+        Files.writeString(dir.resolve("a.res"), "not an entry");
+        assertNull(cache.get("a"));
+        assertTrue(Files.notExists(dir.resolve("a.res")));
+
+        long t = System.currentTimeMillis() - 60_000;
+        for (String key : new String[] { "a", "b", "c" }) {
+            cache.put(key, entry);
+            Files.setLastModifiedTime(dir.resolve(key + ".res"), FileTime.fromMillis(t += 1000));
+        }
+        assertNotNull(cache.get("a"));
+        cache.put("d", entry);
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(3, files.count());
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.nuti.traffic.sim;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class SeqParDeterminismTest {
@@ -43,4 +47,195 @@ public class SeqParDeterminismTest {
         assertEquals(seq.avgFlow(), par.avgFlow(), 1e-9);
         assertEquals(seq.avgStopped(), par.avgStopped(), 1e-9);
     }
+
+    @Test
+    void seqAndPar_bigGrid_sameMetricsForSeveralThreadCounts() {
+        SimulationConfig base = new SimulationConfig(
+                Path.of("grids", "big.txt"),
+                300,
+                300,
+                7L,
+                0.3,
+                7,
+                RunMode.SEQUENTIAL,
+                1,
+                null,
+                false
+        );
+
+        SimulationResult seq = new SequentialEngine().run(base);
+
+        for (int threads : new int[] { 2, 3, 8 }) {
+            SimulationConfig parCfg = new SimulationConfig(
+                    base.gridPath(),
+                    base.vehicles(),
+                    base.ticks(),
+                    base.seed(),
+                    base.turnProb(),
+                    base.lightPeriod(),
+                    RunMode.PARALLEL,
+                    threads,
+                    null,
+                    false
+            );
+
+            SimulationResult par = new ParallelEngine().run(parCfg);
+
+            assertEquals(seq.avgFlow(), par.avgFlow(), 1e-9);
+            assertEquals(seq.avgStopped(), par.avgStopped(), 1e-9);
+        }
+    }
+
+    @Test
+    void seqAndSpatial_bigGrid_sameMetricsForSeveralStripCounts() {
+        SimulationConfig base = new SimulationConfig(
+                Path.of("grids", "big.txt"),
+                300,
+                300,
+                7L,
+                0.3,
+                7,
+                RunMode.SEQUENTIAL,
+                1,
+                null,
+                false
+        );
+
+        SimulationResult seq = new SequentialEngine().run(base);
+
+        for (int threads : new int[] { 1, 2, 5, 14 }) {
+            SimulationConfig spatialCfg = new SimulationConfig(
+                    base.gridPath(),
+                    base.vehicles(),
+                    base.ticks(),
+                    base.seed(),
+                    base.turnProb(),
+                    base.lightPeriod(),
+                    RunMode.SPATIAL,
+                    threads,
+                    null,
+                    false
+            );
+
+            SimulationResult spatial = new SpatialEngine().run(spatialCfg);
+
+            assertEquals(seq.avgFlow(), spatial.avgFlow(), 1e-9);
+            assertEquals(seq.avgStopped(), spatial.avgStopped(), 1e-9);
+        }
+    }
+
+    @Test
+    void seqAndForkJoin_bigGrid_sameMetricsForSeveralPoolSizes() {
+        SimulationConfig base = new SimulationConfig(
+                Path.of("grids", "big.txt"),
+                600,
+                300,
+                11L,
+                0.3,
+                7,
+                RunMode.SEQUENTIAL,
+                1,
+                null,
+                false
+        );
+
+        SimulationResult seq = new SequentialEngine().run(base);
+
+        for (int threads : new int[] { 1, 2, 3, 8 }) {
+            SimulationConfig fjCfg = new SimulationConfig(
+                    base.gridPath(),
+                    base.vehicles(),
+                    base.ticks(),
+                    base.seed(),
+                    base.turnProb(),
+                    base.lightPeriod(),
+                    RunMode.FORKJOIN,
+                    threads,
+                    null,
+                    false
+            );
+
+            SimulationResult fj = new ForkJoinEngine().run(fjCfg);
+
+            assertEquals(seq.avgFlow(), fj.avgFlow(), 1e-9);
+            assertEquals(seq.avgStopped(), fj.avgStopped(), 1e-9);
+        }
+    }
+
+    @Test
+    void reorderByNode_keepsMetricsIdenticalAcrossEngines() {
+        Path grid = Path.of("grids", "big.txt");
+        SimulationConfig plain = new SimulationConfig(grid, 600, 300, 5L, 0.3, 7, RunMode.SEQUENTIAL, 1, null, false);
+        SimulationResult reference = new SequentialEngine().run(plain);
+
+        SimulationConfig seqCfg = new SimulationConfig(grid, 600, 300, 5L, 0.3, 7, RunMode.SEQUENTIAL, 1, null, false).withReorderInterval(7);
+        SimulationConfig parCfg = new SimulationConfig(grid, 600, 300, 5L, 0.3, 7, RunMode.PARALLEL, 3, null, false).withReorderInterval(7);
+        SimulationConfig fjCfg = new SimulationConfig(grid, 600, 300, 5L, 0.3, 7, RunMode.FORKJOIN, 3, null, false).withReorderInterval(7);
+
+        for (SimulationResult r : new SimulationResult[] {
+                new SequentialEngine().run(seqCfg),
+                new ParallelEngine().run(parCfg),
+                new ForkJoinEngine().run(fjCfg)
+        }) {
+            assertEquals(reference.avgFlow(), r.avgFlow(), 1e-9);
+            assertEquals(reference.avgStopped(), r.avgStopped(), 1e-9);
+        }
+    }
+
+    @Test
+    void sleepingVehicles_sameMetricsAsFullScan() {
+        for (String name : new String[] { "ejemplo1.txt", "big.txt" }) {
+            Path grid = Path.of("grids", name);
+            for (int n : new int[] { 50, 200 }) {
+                SimulationConfig plain = new SimulationConfig(grid, n, 300, 13L, 0.3, 7, RunMode.SEQUENTIAL, 1, null, false);
+                SimulationConfig sleeping = new SimulationConfig(grid, n, 300, 13L, 0.3, 7, RunMode.SEQUENTIAL, 1, null, false).withReorderInterval(11).withSleepBlocked(true);
+
+                SimulationResult a = new SequentialEngine().run(plain);
+                SimulationResult b = new SequentialEngine().run(sleeping);
+
+                assertEquals(a.avgFlow(), b.avgFlow(), 1e-9);
+                assertEquals(a.avgStopped(), b.avgStopped(), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void streamedTicks_sameFileAsInMemorySeries(@TempDir Path tmp) throws IOException {
+        Path grid = Path.of("grids", "big.txt");
+        Path reference = tmp.resolve("seq.csv");
+        new SequentialEngine().run(new SimulationConfig(grid, 600, 200, 5L, 0.3, 7, RunMode.SEQUENTIAL, 1, reference, true));
+        byte[] want = Files.readAllBytes(reference);
+
+        RunMode[] modes = { RunMode.SEQUENTIAL, RunMode.PARALLEL, RunMode.SPATIAL, RunMode.FORKJOIN };
+        SimulationEngine[] engines = { new SequentialEngine(), new ParallelEngine(), new SpatialEngine(), new ForkJoinEngine() };
+        for (int e = 0; e < engines.length; e++) {
+            Path out = tmp.resolve(modes[e] + ".csv");
+            engines[e].run(new SimulationConfig(grid, 600, 200, 5L, 0.3, 7, modes[e], 3, out, true).withStreamTicks(true));
+            assertArrayEquals(want, Files.readAllBytes(out), modes[e].toString());
+        }
+    }
+
+    @Test
+    void sharedSession_repeatedRunsAcrossEngines_sameMetrics() {
+        Path grid = Path.of("grids", "big.txt");
+        SimulationConfig seqCfg = new SimulationConfig(grid, 300, 300, 7L, 0.3, 7, RunMode.SEQUENTIAL, 1, null, false);
+        SimulationConfig parCfg = new SimulationConfig(grid, 300, 300, 7L, 0.3, 7, RunMode.PARALLEL, 3, null, false);
+        SimulationConfig smallCfg = new SimulationConfig(grid, 50, 40, 9L, 0.3, 7, RunMode.PARALLEL, 2, null, false);
+
+        SimulationResult reference = new SequentialEngine().run(seqCfg);
+
+        try (SimulationSession session = new SimulationSession(grid)) {
+            SequentialEngine seq = new SequentialEngine();
+            ParallelEngine par = new ParallelEngine();
+            for (int rep = 0; rep < 3; rep++) {
+                SimulationResult s = seq.run(seqCfg, session);
+                par.run(smallCfg, session);
+                SimulationResult p = par.run(parCfg, session);
+
+                assertEquals(reference.avgFlow(), s.avgFlow(), 1e-9);
+                assertEquals(reference.avgFlow(), p.avgFlow(), 1e-9);
+                assertEquals(reference.avgStopped(), p.avgStopped(), 1e-9);
+            }
+        }
+    }
 }
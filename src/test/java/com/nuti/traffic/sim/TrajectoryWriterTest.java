@@ -0,0 +1,83 @@
+package com.nuti.traffic.sim;
+
+import com.nuti.traffic.io.TrajectoryCsvExport;
+import com.nuti.traffic.io.TrajectoryReader;
+import com.nuti.traffic.model.Grid;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrajectoryWriterTest {
+
+    @Test
+    void trajectories_replayToFinalStateAndMatchAcrossEngines(@TempDir Path tmp) {
+        Path grid = Path.of("grids", "big.txt");
+        int n = 600;
+        int ticks = 200;
+
+        int[] finalCell = new int[n];
+        long totalMoved;
+        Path seqTraj = tmp.resolve("seq.traj");
+        try (SimulationSession session = new SimulationSession(grid)) {
+            SimulationResult r = new SequentialEngine().run(new SimulationConfig(grid, n, ticks, 5L, 0.3, 7, RunMode.SEQUENTIAL, 1, null, false).withReorderInterval(7).withTrajectoryFile(seqTraj), session);
+            totalMoved = Math.round(r.avgFlow() * ticks);
+            Grid g = session.grid();
+            VehicleState vehicles = session.vehicles(n);
+            for (int i = 0; i < n; i++) {
+                finalCell[vehicles.id(i)] = g.cellOfNode(vehicles.nodeIdx(i));
+            }
+        }
+
+        long[] want = replayHashes(seqTraj, finalCell, totalMoved);
+        String wantCsv = exportCsv(seqTraj);
+
+        RunMode[] modes = { RunMode.PARALLEL, RunMode.SPATIAL, RunMode.FORKJOIN };
+        SimulationEngine[] engines = { new ParallelEngine(), new SpatialEngine(), new ForkJoinEngine() };
+        for (int e = 0; e < engines.length; e++) {
+            Path traj = tmp.resolve(modes[e] + ".traj");
+            engines[e].run(new SimulationConfig(grid, n, ticks, 5L, 0.3, 7, modes[e], 3, null, false).withReorderInterval(7).withTrajectoryFile(traj));
+            assertArrayEquals(want, replayHashes(traj, finalCell, totalMoved), modes[e].toString());
+            assertEquals(wantCsv, exportCsv(traj), modes[e].toString());
+        }
+    }
+
+    private static String exportCsv(Path traj) {
+        StringWriter out = new StringWriter();
+        try {
+            TrajectoryCsvExport.export(new TrajectoryReader(traj), out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private static long[] replayHashes(Path traj, int[] finalCell, long totalMoved) {
+        TrajectoryReader reader = new TrajectoryReader(traj);
+        long[] hashes = new long[reader.vehicles()];
+        int[] cells = new int[reader.vehicles()];
+        int[] lastTick = new int[reader.vehicles()];
+        long[] moves = new long[1];
+        for (int id = 0; id < cells.length; id++) {
+            cells[id] = reader.initialCell(id);
+            lastTick[id] = -1;
+        }
+        reader.replay((tick, vehicleId, cell, dirIdx) -> {
+            assertTrue(tick > lastTick[vehicleId], "vehicle " + vehicleId + " replayed out of order");
+            lastTick[vehicleId] = tick;
+            cells[vehicleId] = cell;
+            hashes[vehicleId] = hashes[vehicleId] * 31 + ((long) tick << 32 | cell) * 4 + dirIdx;
+            moves[0]++;
+        });
+        assertArrayEquals(finalCell, cells);
+        assertEquals(totalMoved, moves[0]);
+        return hashes;
+    }
+}